@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2011 Davis Marques
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ */
+package ryerson.daspub;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import ryerson.daspub.artifact.PublishArtifactPagesTask;
+import ryerson.daspub.mobile.PublishMobilePresentationTask;
+import ryerson.daspub.model.ArchiveSnapshot;
+import ryerson.daspub.report.PublishReportTask;
+import ryerson.daspub.utility.ArchiveCatalog;
+import ryerson.daspub.utility.FileAttributeIndex;
+import ryerson.daspub.utility.FileFingerprint;
+import ryerson.daspub.utility.SubmissionSpreadsheetAdapter;
+import ryerson.daspub.utility.TaskScheduler;
+
+/**
+ * Watches the archive folders and republishes content when they change. The
+ * archives are polled every WATCH_INTERVAL milliseconds. A poll reads the
+ * last modified time of each archive folder and the fingerprint of each
+ * metadata file, spreadsheet and syllabus; only folders whose last modified
+ * time has changed are listed again. Changes are collected until the
+ * archives have been quiet for WATCH_QUIET_PERIOD milliseconds. Each change
+ * is then mapped to its assignment, course or program folder, the cached
+ * state of those folders is discarded, and the artifact pages, mobile
+ * presentation and report are published incrementally, limited to outputs
+ * derived from the changed folders.
+ * @author dmarques
+ */
+public class ArchiveWatcher implements Runnable {
+
+    private static final int ASSIGNMENT_DEPTH = 3;
+
+    private Config config;
+    private Map<String,Long> folders = new HashMap<String,Long>();
+    private Map<String,FileFingerprint> files = new HashMap<String,FileFingerprint>();
+    private volatile boolean running = true;
+
+    private static final Logger logger = Logger.getLogger(ArchiveWatcher.class.getName());
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * ArchiveWatcher constructor
+     * @param C Configuration
+     */
+    public ArchiveWatcher(Config C) {
+        config = C;
+    }
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Forget a folder and everything recorded within it.
+     * @param Path Folder path
+     */
+    private void forget(String Path) {
+        String prefix = Path + File.separator;
+        folders.remove(Path);
+        Iterator<String> it = folders.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().startsWith(prefix)) {
+                it.remove();
+            }
+        }
+        it = files.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().startsWith(prefix)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Get the archive item that contains a changed folder: the assignment
+     * folder for changes within an assignment, otherwise the course, program
+     * or archive folder itself.
+     * @param Folder Changed folder
+     * @return Item folder or null if the folder is not within an archive.
+     */
+    private static File getItem(File Folder) {
+        Iterator<String> it = Config.ARCHIVE_PATHS.iterator();
+        while (it.hasNext()) {
+            File archive = new File(it.next()).getAbsoluteFile();
+            List<File> ancestors = new ArrayList<File>();
+            File f = Folder.getAbsoluteFile();
+            while (f != null && !f.equals(archive)) {
+                ancestors.add(0,f);
+                f = f.getParentFile();
+            }
+            if (f != null) {
+                if (ancestors.isEmpty()) {
+                    return archive;
+                }
+                return ancestors.get(Math.min(ancestors.size(),ASSIGNMENT_DEPTH) - 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Discard the cached state of changed folders and files.
+     * @param Folders Changed folders
+     * @param Files Changed files
+     */
+    private static void invalidate(Set<File> Folders, Set<File> Files) {
+        FileAttributeIndex index = FileAttributeIndex.getInstance();
+        ArchiveCatalog catalog = ArchiveCatalog.getInstance();
+        Iterator<File> it = Folders.iterator();
+        while (it.hasNext()) {
+            File f = it.next();
+            index.invalidate(f);
+            catalog.invalidate(f);
+        }
+        it = Files.iterator();
+        while (it.hasNext()) {
+            File f = it.next();
+            index.invalidate(f);
+            catalog.invalidate(f);
+            SubmissionSpreadsheetAdapter.invalidate(f);
+        }
+    }
+
+    /**
+     * Determine if a path is a direct child of a folder.
+     * @param Folder Folder path
+     * @param Path Path
+     * @return True if the path is in the folder, false otherwise.
+     */
+    private static boolean isChild(String Folder, String Path) {
+        File parent = new File(Path).getParentFile();
+        return parent != null && parent.getAbsolutePath().equals(Folder);
+    }
+
+    /**
+     * Determine if changes to a file are tracked by fingerprint. These files
+     * may be edited in place, which does not change the last modified time
+     * of their folder.
+     * @param Name File name
+     * @return True if the file is a metadata file, spreadsheet or syllabus.
+     */
+    private static boolean isTracked(String Name) {
+        return Name.equals(Config.COURSE_METADATA_FILE)
+                || Name.equals(Config.COURSE_SYLLABUS_FILE)
+                || Name.equals(Config.ASSIGNMENT_METADATA_FILE)
+                || Name.equals(Config.ASSIGNMENT_SYLLABUS_FILE)
+                || Name.equals(Config.SUBMISSION_METADATA_FILE);
+    }
+
+    /**
+     * List a folder and record the last modified time of its subfolders and
+     * the fingerprints of its tracked files. New subfolders are listed in
+     * turn. Entries that were recorded before but no longer exist are
+     * forgotten.
+     * @param Folder Folder
+     * @param Changes Changed files and folders found while listing
+     */
+    private void list(File Folder, List<File> Changes) {
+        String path = Folder.getAbsolutePath();
+        File[] entries = Folder.listFiles();
+        if (entries == null) {
+            forget(path);
+            return;
+        }
+        folders.put(path,Folder.lastModified());
+        Set<String> present = new TreeSet<String>();
+        for (int i=0;i<entries.length;i++) {
+            File f = entries[i];
+            String p = f.getAbsolutePath();
+            present.add(p);
+            if (f.isDirectory()) {
+                if (!folders.containsKey(p)) {
+                    Changes.add(f);
+                    list(f,Changes);
+                }
+            } else if (isTracked(f.getName()) && !files.containsKey(p)) {
+                files.put(p,new FileFingerprint(f));
+                Changes.add(f);
+            }
+        }
+        // forget removed entries
+        List<String> removed = new ArrayList<String>();
+        Iterator<String> it = folders.keySet().iterator();
+        while (it.hasNext()) {
+            String p = it.next();
+            if (isChild(path,p) && !present.contains(p)) {
+                removed.add(p);
+            }
+        }
+        it = files.keySet().iterator();
+        while (it.hasNext()) {
+            String p = it.next();
+            if (isChild(path,p) && !present.contains(p)) {
+                removed.add(p);
+            }
+        }
+        it = removed.iterator();
+        while (it.hasNext()) {
+            String p = it.next();
+            forget(p);
+            files.remove(p);
+            Changes.add(new File(p));
+        }
+    }
+
+    /**
+     * Check the recorded folders and tracked files for changes. Folders are
+     * listed again only if their last modified time has changed.
+     * @return Changed files and folders
+     */
+    private List<File> poll() {
+        List<File> changes = new ArrayList<File>();
+        List<String> paths = new ArrayList<String>(folders.keySet());
+        Iterator<String> it = paths.iterator();
+        while (it.hasNext()) {
+            String path = it.next();
+            Long recorded = folders.get(path);
+            if (recorded == null) {
+                // forgotten while listing its parent
+                continue;
+            }
+            File folder = new File(path);
+            if (folder.lastModified() != recorded.longValue()) {
+                changes.add(folder);
+                list(folder,changes);
+            }
+        }
+        paths = new ArrayList<String>(files.keySet());
+        it = paths.iterator();
+        while (it.hasNext()) {
+            String path = it.next();
+            FileFingerprint recorded = files.get(path);
+            if (recorded == null) {
+                continue;
+            }
+            File f = new File(path);
+            FileFingerprint current = new FileFingerprint(f);
+            if (!current.equals(recorded)) {
+                if (f.exists()) {
+                    files.put(path,current);
+                } else {
+                    files.remove(path);
+                }
+                changes.add(f);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Publish the artifact pages, mobile presentation and report
+     * incrementally.
+     * @param Scope Changed folders, or null to check all content
+     */
+    private void publish(List<File> Scope) {
+        long start = System.currentTimeMillis();
+        ArchiveSnapshot snapshot = new ArchiveSnapshot(Config.ARCHIVE_PATHS,Scope);
+        TaskScheduler scheduler = new TaskScheduler(Main.getThreadPool());
+        scheduler.add("artifact", new PublishArtifactPagesTask(config,snapshot));
+        scheduler.add("mobile", new PublishMobilePresentationTask(config,snapshot));
+        scheduler.add("report", new PublishReportTask(config,snapshot));
+        try {
+            scheduler.start();
+            if (!scheduler.awaitCompletion()) {
+                logger.log(Level.WARNING,"One or more publishing tasks did not complete");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+        logger.log(Level.INFO,"Published changes in {0} ms",System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Publish changed content until the watcher is stopped. Changes made
+     * since the last publication are published when the watcher starts.
+     */
+    @Override
+    public void run() {
+        Config.INCREMENTAL_PUBLISH = true;
+        Iterator<String> ita = Config.ARCHIVE_PATHS.iterator();
+        while (ita.hasNext()) {
+            list(new File(ita.next()),new ArrayList<File>());
+        }
+        publish(null);
+        logger.log(Level.INFO,"Watching {0} archive(s) for changes",Config.ARCHIVE_PATHS.size());
+        Set<File> changes = new TreeSet<File>();
+        long lastChange = 0L;
+        while (running) {
+            try {
+                Thread.sleep(Config.WATCH_INTERVAL);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            try {
+                List<File> found = poll();
+                if (!found.isEmpty()) {
+                    changes.addAll(found);
+                    lastChange = System.currentTimeMillis();
+                } else if (!changes.isEmpty()
+                        && System.currentTimeMillis() - lastChange >= Config.WATCH_QUIET_PERIOD) {
+                    // a changed folder is its own item, a changed file 
+                    // belongs to the item of its folder
+                    Set<File> changedFolders = new TreeSet<File>();
+                    Set<File> changedFiles = new TreeSet<File>();
+                    Set<File> items = new TreeSet<File>();
+                    Iterator<File> it = changes.iterator();
+                    while (it.hasNext()) {
+                        File f = it.next();
+                        File folder = f;
+                        if (isTracked(f.getName())) {
+                            changedFiles.add(f);
+                            folder = f.getParentFile();
+                        }
+                        changedFolders.add(folder);
+                        File item = getItem(folder);
+                        if (item != null) {
+                            items.add(item);
+                        }
+                    }
+                    logger.log(Level.INFO,"Publishing {0} change(s) in {1}",
+                            new Object[]{changes.size(),items});
+                    invalidate(changedFolders,changedFiles);
+                    changes.clear();
+                    publish(new ArrayList<File>(items));
+                }
+            } catch (Exception ex) {
+                String stack = ExceptionUtils.getStackTrace(ex);
+                logger.log(Level.SEVERE,"Could not publish archive changes\n\n{0}",stack);
+            }
+        }
+    }
+
+    /**
+     * Stop watching. The current publication is completed first.
+     */
+    public void stop() {
+        running = false;
+    }
+
+} // end class
@@ -20,7 +20,6 @@ package ryerson.daspub;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.IOException;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -29,7 +28,6 @@ import java.util.Scanner;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
 /**
@@ -67,6 +65,7 @@ public class Config {
     public static String ARTIFACT_TEMPLATE_PATH = "c:\\daspublisher\\template\\artifact.php";
     public static String ASSIGNMENT_TEMPLATE_PATH = "c:\\daspublisher\\static\\assignment.txt";
     public static String COURSE_TEMPLATE_PATH = "c:\\daspublisher\\static\\course.txt";
+    public static boolean TEMPLATE_RELOAD = false;  // read template files again when they change
 
     // static content
     public static String STATIC_ARTIFACT_CONTENT = "c:\\daspublisher\\static\\artifact\\";
@@ -91,6 +90,10 @@ public class Config {
     public static int THUMB_MAX_WIDTH = 300;      // thumbnail image maximum width
     public static int VIDEO_MAX_WIDTH = 640;      // maximum video width
     public static int VIDEO_MAX_HEIGHT = 480;     // maximum video height
+    public static int VIDEO_POSTER_OFFSET = 5;    // time of video poster frame, in seconds
+    public static int VIDEO_MAX_BITRATE = 1000000;    // maximum video bit rate, in bits per second
+    public static int VIDEO_TRANSCODE_THREADS = 1;    // maximum number of videos transcoded at once
+    public static int VIDEO_TRANSCODE_QUEUE_SIZE = 16;    // maximum number of videos waiting to be transcoded
     
     public static String ARTIFACT_BASE_URL = "http://www.myserver.org/";
     public static int ARTIFACT_PREVIEW_MAX_HEIGHT = 640;
@@ -98,6 +101,27 @@ public class Config {
     public static int ARTIFACT_TAG_WIDTH = 200;
     public static int ARTIFACT_TAG_HEIGHT = 200;
 
+    // caches
+    public static int SPREADSHEET_CACHE_SIZE = 256;  // maximum number of parsed submission spreadsheets held in memory
+    public static String PDF_METADATA_INDEX_FILE = "pdf-metadata.json";   // PDF metadata index, written to the output folder
+    public static String VIDEO_METADATA_INDEX_FILE = "video-metadata.json";   // video metadata index, written to the output folder
+    public static String RENDITION_CACHE_PATH = "c:\\daspublisher\\cache\\rendition\\";   // rendered image cache, empty to disable
+    public static String CATALOG_PATH = "c:\\daspublisher\\cache\\catalog.json";   // archive catalog, reused between runs, empty to disable
+    public static boolean DEPLOY_HARD_LINKS = false;   // hard link static files and videos into the output folder instead of copying them
+
+    // incremental publication
+    public static boolean INCREMENTAL_PUBLISH = false;                  // rebuild only outputs whose sources have changed
+    public static String BUILD_MANIFEST_FILE = "build-manifest.json";   // build manifest, written to the output folder
+
+    // concurrency
+    public static int PUBLISH_PARALLELISM = Runtime.getRuntime().availableProcessors();   // maximum number of publishing jobs run at once
+    public static int DISCOVERY_THREADS = 8;   // maximum number of archive folders scanned at once
+    public static int PDF_DECODER_POOL_SIZE = Runtime.getRuntime().availableProcessors(); // maximum number of PDF documents rendered at once
+
+    // archive watching
+    public static int WATCH_INTERVAL = 10000;         // milliseconds between checks of the archive folders for changes
+    public static int WATCH_QUIET_PERIOD = 5000;      // milliseconds without further changes before changed content is published
+
     private static File input;
     private static String data;
 
@@ -120,21 +144,6 @@ public class Config {
 
     //--------------------------------------------------------------------------
     
-    /**
-     * Get the artifact template.
-     * @return 
-     */
-    public String getArtifactTemplate() {
-        File template = new File(Config.ARTIFACT_TEMPLATE_PATH);
-        try {
-            return FileUtils.readFileToString(template);
-        } catch (IOException ex) {
-            logger.log(Level.SEVERE, "Could not load artifact template {0}", 
-                    new Object[] {template.getAbsolutePath(),ex});
-            return "";
-        }
-    }
-    
     /**
      * Load configuration data from a file.
      * @param F Configuration file
@@ -218,6 +227,8 @@ public class Config {
                 val = Args.get(name);
                 if (field.getType()==int.class) {
                     field.setInt(Config.class,Integer.valueOf(val));
+                } else if (field.getType()==boolean.class) {
+                    field.setBoolean(Config.class,Boolean.valueOf(val));
                 } else {
                     field.set(Config.class,val);
                 }
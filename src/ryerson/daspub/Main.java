@@ -36,11 +36,14 @@ import ryerson.daspub.artifact.PublishArtifactPagesTask;
 import ryerson.daspub.artifact.PublishQRTagSheetTask;
 import ryerson.daspub.init.Initializer;
 import ryerson.daspub.mobile.PublishMobilePresentationTask;
+import ryerson.daspub.model.ArchiveSnapshot;
 import ryerson.daspub.report.PublishReportTask;
 import ryerson.daspub.slideshow.PublishSlideshowTask;
 import ryerson.daspub.ui.ApplicationJFrame;
 import ryerson.daspub.ui.JTextAreaOutputFormatter;
 import ryerson.daspub.ui.JTextAreaOutputHandler;
+import ryerson.daspub.utility.CopyFilesTask;
+import ryerson.daspub.utility.TaskScheduler;
 
 /**
  * Command line interface to application components.
@@ -54,10 +57,13 @@ public class Main implements Runnable {
     private static final String CMD_CONFIG = "config";
     private static final String CMD_HELP = "help";
     private static final String CMD_GUI = "gui";
+    private static final String CMD_INCREMENTAL = "incremental";
     private static final String CMD_INIT = "init";
     private static final String CMD_OUTPUT = "output";
     private static final String CMD_PUBLISH = "publish";
+    private static final String CMD_WATCH = "watch";
 
+    private static final String OPTION_ALL = "all";
     private static final String OPTION_ARTIFACT = "artifact";
     private static final String OPTION_MOBILE = "mobile";
     private static final String OPTION_REPORT = "report";
@@ -93,8 +99,10 @@ public class Main implements Runnable {
         options.addOption(CMD_CONFIG, true, "Path to project configuration file.");
         options.addOption(CMD_GUI, false, "Show the application user interface. This option halts execution of additional publishing options.");
         options.addOption(CMD_HELP, false, "Show command line help message.");
+        options.addOption(CMD_INCREMENTAL, false, "When publishing, rebuild only the outputs whose source files, templates or configuration values have changed since the last publication.");
         options.addOption(CMD_INIT, true, "Create a new archive with sample course folders and metadata files or, update an existing archive with required files. Requires specification of an archive path.");
-        options.addOption(CMD_PUBLISH, true, "Publish content. Available options are artifact, mobile, report, slideshow, tagsheet. Requires specification of output path.");
+        options.addOption(CMD_PUBLISH, true, "Publish content. Available options are all, artifact, mobile, report, slideshow, tagsheet. Requires specification of output path.");
+        options.addOption(CMD_WATCH, false, "Watch the archive folders and publish the artifact pages, mobile presentation and report whenever they change. Runs until the process is stopped.");
     }
 
     /**
@@ -116,8 +124,16 @@ public class Main implements Runnable {
      */
     private void executePublish() {
         String option = cmd.getOptionValue(CMD_PUBLISH);
+        boolean success = true;
         try {
-            if (option.equals(OPTION_ARTIFACT)) {
+            if (option.equals(OPTION_ALL)) {
+                TaskScheduler scheduler = getPublishAllScheduler(config);
+                scheduler.start();
+                success = scheduler.awaitCompletion();
+                if (!success) {
+                    logger.log(Level.SEVERE,"One or more publishing tasks did not complete");
+                }
+            } else if (option.equals(OPTION_ARTIFACT)) {
                 PublishArtifactPagesTask p = new PublishArtifactPagesTask(config);
                 pool.execute(p);
             } else if (option.equals(OPTION_MOBILE)) {
@@ -149,7 +165,46 @@ public class Main implements Runnable {
             logger.log(Level.SEVERE, "Exception while waiting for thread pool termination.\n\n{0}", ex);
         }
         // halt
-        System.exit(Main.SUCCESS);
+        System.exit(success ? Main.SUCCESS : Main.FAIL);
+    }
+
+    /**
+     * Watch the archive and publish changes.
+     */
+    private void executeWatch() {
+        ArchiveWatcher watcher = new ArchiveWatcher(config);
+        watcher.run();
+        pool.shutdown();
+        System.exit(SUCCESS);
+    }
+
+    /**
+     * Get scheduler for publishing all content. Static content is copied to
+     * each output folder before that folder's content is generated, and the
+     * QR tag sheet is generated after the artifact pages have written the QR
+     * tags. Content tasks share one archive snapshot.
+     * @param C Configuration
+     * @return Scheduler, running on the application thread pool
+     */
+    public static TaskScheduler getPublishAllScheduler(Config C) {
+        ArchiveSnapshot snapshot = new ArchiveSnapshot(Config.ARCHIVE_PATHS);
+        TaskScheduler scheduler = new TaskScheduler(pool);
+        // copy static content
+        scheduler.add("copy-artifact", new CopyFilesTask(new File(Config.STATIC_ARTIFACT_CONTENT),
+                                                         new File(Config.OUTPUT_ARTIFACT_PAGES_PATH)));
+        scheduler.add("copy-mobile", new CopyFilesTask(new File(Config.STATIC_MOBILE_CONTENT),
+                                                       new File(Config.OUTPUT_MOBILE_WORK_PATH)));
+        scheduler.add("copy-report", new CopyFilesTask(new File(Config.STATIC_REPORT_CONTENT),
+                                                       new File(Config.OUTPUT_REPORT_PATH)));
+        scheduler.add("copy-slideshow", new CopyFilesTask(new File(Config.STATIC_SLIDESHOW_CONTENT),
+                                                          new File(Config.OUTPUT_SLIDESHOW_PATH)));
+        // generate content
+        scheduler.add(OPTION_ARTIFACT, new PublishArtifactPagesTask(C,snapshot), "copy-artifact");
+        scheduler.add(OPTION_TAGSHEET, new PublishQRTagSheetTask(C), OPTION_ARTIFACT);
+        scheduler.add(OPTION_MOBILE, new PublishMobilePresentationTask(C,snapshot), "copy-mobile");
+        scheduler.add(OPTION_REPORT, new PublishReportTask(C,snapshot), "copy-report");
+        scheduler.add(OPTION_SLIDESHOW, new PublishSlideshowTask(C), "copy-slideshow");
+        return scheduler;
     }
 
     /**
@@ -194,6 +249,11 @@ public class Main implements Runnable {
             showHelpMessage();
             System.exit(SUCCESS);
         }
+        // pick up template edits made while the application is open, unless
+        // the configuration file turns it off
+        if (cmd.hasOption(CMD_GUI)) {
+            Config.TEMPLATE_RELOAD = true;
+        }
         // load configuration
         if (cmd.hasOption(CMD_CONFIG)) {
             try {
@@ -206,6 +266,10 @@ public class Main implements Runnable {
                 System.exit(FAIL);
             }
         }
+        // enable incremental publication
+        if (cmd.hasOption(CMD_INCREMENTAL)) {
+            Config.INCREMENTAL_PUBLISH = true;
+        }
         // show gui or process command line options
         if (cmd.hasOption(CMD_GUI)) {
             ApplicationJFrame frame = ApplicationJFrame.getInstance();
@@ -233,6 +297,8 @@ public class Main implements Runnable {
             executeInit();
         } else if (cmd.hasOption(CMD_PUBLISH)) {
             executePublish();
+        } else if (cmd.hasOption(CMD_WATCH)) {
+            executeWatch();
         }
     }
 
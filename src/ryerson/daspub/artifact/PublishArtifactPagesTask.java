@@ -24,20 +24,32 @@ import com.google.zxing.common.BitMatrix;
 import com.google.zxing.qrcode.QRCodeWriter;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import ryerson.daspub.model.Archive;
+import ryerson.daspub.model.ArchiveSnapshot;
 import ryerson.daspub.model.Assignment;
 import ryerson.daspub.Config;
 import ryerson.daspub.model.Course;
 import ryerson.daspub.model.Program;
 import ryerson.daspub.model.Submission;
+import ryerson.daspub.utility.BuildManifest;
+import ryerson.daspub.utility.HashUtils;
 import ryerson.daspub.utility.ImageUtils;
+import ryerson.daspub.utility.ParallelJobRunner;
+import ryerson.daspub.utility.PDFMetadataIndex;
 import ryerson.daspub.utility.PDFUtils;
+import ryerson.daspub.utility.Rendition;
+import ryerson.daspub.utility.SubmissionSpreadsheetAdapter;
+import ryerson.daspub.utility.Template;
+import ryerson.daspub.utility.TemplateRegistry;
 
 /**
  * Artifact web gallery generator.
@@ -45,8 +57,10 @@ import ryerson.daspub.utility.PDFUtils;
 public class PublishArtifactPagesTask implements Runnable {
 
     private Config config = null;
+    private ArchiveSnapshot snapshot;
     private File output;
-    private String template = "";
+    private Template template;
+    private BuildManifest manifest;
 
     private File largeDir;
     private File mediumDir;
@@ -62,23 +76,45 @@ public class PublishArtifactPagesTask implements Runnable {
      * @param Configuration Configuration
      */
     public PublishArtifactPagesTask(Config Configuration) {
+        this(Configuration,new ArchiveSnapshot(Config.ARCHIVE_PATHS));
+    }
+
+    /**
+     * ArtifactTagGenerator constructor
+     * @param Configuration Configuration
+     * @param Snapshot Archive snapshot
+     */
+    public PublishArtifactPagesTask(Config Configuration, ArchiveSnapshot Snapshot) {
         config = Configuration;
+        snapshot = Snapshot;
         output = new File(Config.OUTPUT_ARTIFACT_PAGES_PATH);
         largeDir = new File(output,"large");
         mediumDir = new File(output,"medium");
         smallDir = new File(output,"small");
         qrDir = new File(output,"qr");
-        template = config.getArtifactTemplate();
+        try {
+            template = TemplateRegistry.getInstance().get(new File(Config.ARTIFACT_TEMPLATE_PATH));
+        } catch (IOException ex) {
+            String stack = ExceptionUtils.getStackTrace(ex);
+            logger.log(Level.SEVERE, "Could not load artifact template \"{0}\"\n\n{1}",
+                    new Object[] {Config.ARTIFACT_TEMPLATE_PATH,stack});
+        }
     }
 
     //--------------------------------------------------------------------------
 
     /**
      * Run
+     * @throws RuntimeException if the artifact template could not be loaded,
+     * or one or more artifact records could not be generated
      */
     @Override
     public void run() {
         logger.log(Level.INFO,"STARTING publish artifact pages task");
+        if (template == null) {
+            logger.log(Level.SEVERE,"Artifact pages were not published because the artifact template could not be loaded");
+            throw new RuntimeException("Could not load artifact template " + Config.ARTIFACT_TEMPLATE_PATH);
+        }
         // make the output directory if it does not exist
         if (!output.exists()) {
             output.mkdirs();
@@ -88,42 +124,112 @@ public class PublishArtifactPagesTask implements Runnable {
         mediumDir.mkdirs();
         smallDir.mkdirs();
         qrDir.mkdirs();
-        // generate static pages for each submission
-        List<Archive> archives = Archive.getArchives(Config.ARCHIVE_PATHS);
-        Iterator<Archive> ita = archives.iterator();
-        while (ita.hasNext()) {
-            Archive archive = ita.next();
-            Iterator<Program> itp = archive.getPrograms();
-            while (itp.hasNext()) {
-                Program program = itp.next();
-                Iterator<Course> itc = program.getCourses();
-                while (itc.hasNext()) {
-                    Course course = itc.next();
-                    List<Assignment> la = course.getAssignments();
-                    Iterator<Assignment> itas = la.iterator();
-                    while (itas.hasNext()) {
-                        Assignment assignment = itas.next();
-                        List<Submission> ls = assignment.getSubmissions();
-                        Iterator<Submission> its = ls.iterator();
-                        while (its.hasNext()) {
-                            Submission submission = its.next();
-                            if (submission.hasSourceFile()) {
-                                processSubmission(submission, output);
-                            }
+        // load PDF metadata from the previous run
+        File index = new File(output,Config.PDF_METADATA_INDEX_FILE);
+        PDFMetadataIndex.getInstance().load(index);
+        // load the build manifest from the previous run
+        manifest = new BuildManifest(new File(output,Config.BUILD_MANIFEST_FILE),Config.INCREMENTAL_PUBLISH);
+        manifest.setScope(snapshot.getScope());
+        manifest.load();
+        // scan the archives before starting the worker threads
+        List<Archive> archives = snapshot.getArchives();
+        // generate static pages for each submission, one job per submission
+        final ParallelJobRunner runner = new ParallelJobRunner(Config.PUBLISH_PARALLELISM);
+        int failed = 0;
+        try {
+            Iterator<Archive> ita = archives.iterator();
+            while (ita.hasNext()) {
+                Archive archive = ita.next();
+                Iterator<Program> itp = archive.getPrograms();
+                while (itp.hasNext()) {
+                    Program program = itp.next();
+                    Iterator<Course> itc = program.getCourses();
+                    while (itc.hasNext()) {
+                        Course course = itc.next();
+                        List<Assignment> la = course.getAssignments();
+                        Iterator<Assignment> itas = la.iterator();
+                        while (itas.hasNext()) {
+                            Assignment assignment = itas.next();
+                            // start each submission as soon as it is read
+                            assignment.readSubmissions(new SubmissionSpreadsheetAdapter.Handler() {
+                                @Override
+                                public boolean handle(final Submission S) {
+                                    if (S.hasSourceFile()) {
+                                        runner.submit(S.getSourceFile().getAbsolutePath(), new Callable<Object>() {
+                                            @Override
+                                            public Object call() throws Exception {
+                                                processSubmission(S, output);
+                                                return null;
+                                            }
+                                        });
+                                    }
+                                    return true;
+                                }
+                            });
                         }
                     }
                 }
             }
+        } finally {
+            // wait for the submissions to be processed. the worker threads
+            // are released even if reading the submissions failed
+            try {
+                failed = runner.awaitCompletion().size();
+                if (failed > 0) {
+                    logger.log(Level.WARNING,"Could not generate artifact records for {0} submission(s)",failed);
+                }
+            } catch (InterruptedException ex) {
+                logger.log(Level.SEVERE,"Interrupted while waiting for artifact pages to be written");
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for artifact pages to be written",ex);
+            } finally {
+                // keep the records of the pages that were written
+                PDFMetadataIndex.getInstance().save(index);
+                manifest.save();
+            }
+        }
+        if (failed > 0) {
+            throw new RuntimeException("Could not generate artifact records for " + failed + " submission(s)");
         }
         logger.log(Level.INFO,"DONE publish artifact pages task");
     }
 
+    /**
+     * Get digest of the submission values and configuration values that an
+     * artifact page is derived from.
+     * @param S Submission
+     * @return Digest
+     */
+    private static String getValuesKey(Submission S) {
+        return HashUtils.md5(S.getYear(),
+                             S.getSemester(),
+                             S.getCourseNumber(),
+                             S.getCourseName(),
+                             S.getStudioMaster(),
+                             S.getInstructor(),
+                             S.getAssignmentName(),
+                             S.getAssignmentDuration(),
+                             S.getStudentName(),
+                             S.getId(),
+                             S.getEvaluation(),
+                             Config.ARTIFACT_BASE_URL,
+                             Config.ARTIFACT_TAG_WIDTH,
+                             Config.ARTIFACT_TAG_HEIGHT,
+                             Config.THUMB_MAX_WIDTH,
+                             Config.THUMB_MAX_HEIGHT,
+                             Config.ARTIFACT_PREVIEW_MAX_WIDTH,
+                             Config.ARTIFACT_PREVIEW_MAX_HEIGHT,
+                             Config.IMAGE_MAX_WIDTH,
+                             Config.IMAGE_MAX_HEIGHT);
+    }
+
     /**
      * Process the submission
      * @param S
      * @param Output
+     * @throws Exception if the artifact record could not be generated
      */
-    private void processSubmission(Submission S, File Output) {
+    private void processSubmission(Submission S, File Output) throws Exception {
         File input = S.getSourceFile();
         String id = S.getId();
         if (id != null) {
@@ -135,54 +241,71 @@ public class PublishArtifactPagesTask implements Runnable {
                 String large_jpg = id + ".jpg";
                 String qrcode_png = id + ".png";
                 String thumbnail_jpg = id + ".jpg";
+                // skip the submission if its outputs are up to date
+                File artifactPageFile = new File(Output, artifact_html);
+                List<File> inputs = new ArrayList<File>();
+                inputs.add(input);
+                inputs.add(new File(Config.ARTIFACT_TEMPLATE_PATH));
+                String values = getValuesKey(S);
+                if (manifest.isCurrent(artifact_html, inputs, values)) {
+                    logger.log(Level.FINE, "Artifact page for {0} is up to date", input.getAbsolutePath());
+                    return;
+                }
                 // resize and write image to output folder
+                List<Rendition> renditions = new ArrayList<Rendition>();
+                renditions.add(new Rendition(new File(smallDir, thumbnail_jpg), Config.THUMB_MAX_WIDTH, Config.THUMB_MAX_HEIGHT));
+                renditions.add(new Rendition(new File(mediumDir, medium_jpg), Config.ARTIFACT_PREVIEW_MAX_WIDTH, Config.ARTIFACT_PREVIEW_MAX_HEIGHT));
+                renditions.add(new Rendition(new File(largeDir, large_jpg), Config.IMAGE_MAX_WIDTH, Config.IMAGE_MAX_HEIGHT));
+                List<File> images = new ArrayList<File>();
                 if (S.isPDF()) {
-                    PDFUtils.writeJPGImage(input, new File(smallDir, thumbnail_jpg), Config.THUMB_MAX_WIDTH, Config.THUMB_MAX_HEIGHT);
-                    PDFUtils.writeJPGImage(input, new File(mediumDir, medium_jpg), Config.ARTIFACT_PREVIEW_MAX_WIDTH, Config.ARTIFACT_PREVIEW_MAX_HEIGHT);
-                    PDFUtils.writeJPGImage(input, new File(largeDir, large_jpg), Config.IMAGE_MAX_WIDTH, Config.IMAGE_MAX_HEIGHT);
+                    images = PDFUtils.writeJPGImages(input, renditions);
                 } else if (S.isImage()) {
-                    ImageUtils.writeJPGImage(input, new File(smallDir, thumbnail_jpg), Config.THUMB_MAX_WIDTH, Config.THUMB_MAX_HEIGHT);
-                    ImageUtils.writeJPGImage(input, new File(mediumDir, medium_jpg), Config.ARTIFACT_PREVIEW_MAX_WIDTH, Config.ARTIFACT_PREVIEW_MAX_HEIGHT);
-                    ImageUtils.writeJPGImage(input, new File(largeDir, large_jpg), Config.IMAGE_MAX_WIDTH, Config.IMAGE_MAX_HEIGHT);
+                    images = ImageUtils.writeJPGImages(input, renditions);
                 } else if (S.isVideo()) {
                     // not implemented yet
                 }
                 // substitute artifact page template values
-                String page = new String(template);
-                page = page.replace("${imageMedium}", medium_jpg);
-                page = page.replace("${imageLarge}", large_jpg);
-                page = page.replace("${year}", S.getYear());
-                page = page.replace("${semester}", S.getSemester());
-                page = page.replace("${courseNumber}", S.getCourseNumber());
-                page = page.replace("${courseName}", S.getCourseName());
-                page = page.replace("${studioMaster}", S.getStudioMaster());
-                page = page.replace("${instructor}", S.getInstructor());
-                page = page.replace("${assignmentName}", S.getAssignmentName());
-                page = page.replace("${assignmentDuration}", S.getAssignmentDuration());
-                page = page.replace("${studentName}", S.getStudentName());
-                page = page.replace("${submissionId}", S.getId());
+                Map<String,String> fields = new HashMap<String,String>();
+                fields.put("imageMedium", medium_jpg);
+                fields.put("imageLarge", large_jpg);
+                fields.put("year", S.getYear());
+                fields.put("semester", S.getSemester());
+                fields.put("courseNumber", S.getCourseNumber());
+                fields.put("courseName", S.getCourseName());
+                fields.put("studioMaster", S.getStudioMaster());
+                fields.put("instructor", S.getInstructor());
+                fields.put("assignmentName", S.getAssignmentName());
+                fields.put("assignmentDuration", S.getAssignmentDuration());
+                fields.put("studentName", S.getStudentName());
+                fields.put("submissionId", S.getId());
                 String evaluation = "None";
                 if (S.getEvaluation() == Config.SUBMISSION_EVALUATION.HIGH_PASS) {
                     evaluation = "High Pass";
                 } else if (S.getEvaluation() == Config.SUBMISSION_EVALUATION.LOW_PASS) {
                     evaluation = "Low Pass";
                 }
-                page = page.replace("${evaluation}", evaluation);
+                fields.put("evaluation", evaluation);
                 String caption = S.getAssignmentName() + " - " +
                                  S.getStudentName() + ", " +
                                  S.getEvaluation();
-                page = page.replace("${caption}", caption);
+                fields.put("caption", caption);
                 // write page
-                File artifactPageFile = new File(Output, artifact_html);
                 logger.log(Level.INFO,"Writing artifact page \"{0}\"",artifactPageFile.getAbsolutePath());
-                FileUtils.write(artifactPageFile, page);
+                template.write(fields, artifactPageFile);
                 // generate qr code and write to output folder
                 String url = Config.ARTIFACT_BASE_URL + "/" + artifact_html;
                 writeQRTag(url, qrDir, qrcode_png);
+                // record the outputs
+                List<File> outputs = new ArrayList<File>();
+                outputs.add(artifactPageFile);
+                outputs.add(new File(qrDir, qrcode_png));
+                outputs.addAll(images);
+                manifest.record(artifact_html, inputs, outputs, values);
             } catch (Exception ex) {
                 String stack = ExceptionUtils.getStackTrace(ex);
                 logger.log(Level.WARNING, "Could not generate artifact record for {0}. Caught exception:\n\n{1}",
                         new Object[]{input.getAbsolutePath(), stack});
+                throw ex;
             }
         } else {
             logger.log(Level.WARNING, "Could not create artifact page for {0}. Submission ID not available.", input.getAbsolutePath());
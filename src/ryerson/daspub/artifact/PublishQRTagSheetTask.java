@@ -275,6 +275,7 @@ public class PublishQRTagSheetTask implements Runnable {
         } catch (Exception ex) {
             String stack = ExceptionUtils.getStackTrace(ex);
             logger.log(Level.SEVERE,"Could not write tag sheet file.\n\n{0}",stack);
+            throw new RuntimeException("Could not write tag sheet file",ex);
         }
         logger.log(Level.INFO,"DONE publish QR tag sheet task");
     }
@@ -295,6 +296,8 @@ public class PublishQRTagSheetTask implements Runnable {
             // create a new PDF document
             logger.log(Level.INFO,"Writing tag sheet \"{0}\"",outputFile.getAbsolutePath());
             Document document = new Document(PageSize.LETTER);
+            // remove the old sheet first, so that a hard linked file is not written through
+            outputFile.delete();
             PdfWriter writer = PdfWriter.getInstance(document,new FileOutputStream(outputFile));
             document.addTitle("Artifact QR Code Labels");
             document.open();
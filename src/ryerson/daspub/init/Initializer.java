@@ -29,6 +29,7 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import ryerson.daspub.Config;
 import ryerson.daspub.model.Archive;
+import ryerson.daspub.model.ArchiveSnapshot;
 import ryerson.daspub.model.Assignment;
 import ryerson.daspub.model.Course;
 import ryerson.daspub.model.Program;
@@ -42,6 +43,7 @@ import ryerson.daspub.model.Program;
 public class Initializer implements Runnable {
 
     private Config config;
+    private ArchiveSnapshot snapshot;
     
     private String configurationFile = "";
     private String archiveMetadataFile = "";
@@ -63,7 +65,17 @@ public class Initializer implements Runnable {
      * @param C Configuration
      */
     public Initializer(Config C) {
+        this(C,new ArchiveSnapshot(Config.ARCHIVE_PATHS));
+    }
+
+    /**
+     * Initializer constructor
+     * @param C Configuration
+     * @param Snapshot Archive snapshot
+     */
+    public Initializer(Config C, ArchiveSnapshot Snapshot) {
         config = C;
+        snapshot = Snapshot;
     }
     
     //--------------------------------------------------------------------------
@@ -87,7 +99,7 @@ public class Initializer implements Runnable {
      */
     public void run() {
         // create a model
-        List<Archive> archives = Archive.getArchives(Config.ARCHIVE_PATHS);
+        List<Archive> archives = snapshot.getArchives();
         Iterator<Archive> ita = archives.iterator();
         while (ita.hasNext()) {
             Archive a = ita.next();
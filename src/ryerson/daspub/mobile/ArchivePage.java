@@ -25,6 +25,8 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import ryerson.daspub.model.Archive;
+import ryerson.daspub.utility.BuildManifest;
+import ryerson.daspub.utility.ParallelJobRunner;
 
 /**
  * Utility class to publish HTML data for an archive.
@@ -39,28 +41,29 @@ public class ArchivePage {
     
     /**
      * Write the archive HTML to the specified path. Create the path if it does 
-     * not exist.
+     * not exist. Course pages are submitted to the job runner, so they may
+     * still be in progress when this method returns.
      * @param A
      * @param F 
+     * @param Manifest Build manifest
+     * @param Runner Job runner
      */
-    public static void Write(Archive A, File F) {
-        try {
-            Program program = null;
-            File archiveOutDir = new File(F,A.getURLSafeName());
-            // process programs
-            Iterator<Program> programs = A.getPrograms();
-            while (programs.hasNext()) {
-                program = programs.next();
-                File programOutDir = new File(archiveOutDir,program.getURLSafeName());
-                ProgramPage.Write(program, programOutDir);
+    public static void Write(Archive A, File F, BuildManifest Manifest, ParallelJobRunner Runner) {
+        File archiveOutDir = new File(F,A.getURLSafeName());
+        // process programs
+        Iterator<Program> programs = A.getPrograms();
+        while (programs.hasNext()) {
+            Program program = programs.next();
+            File programOutDir = new File(archiveOutDir,program.getURLSafeName());
+            try {
+                ProgramPage.Write(program, programOutDir, Manifest, Runner);
+            } catch (Exception ex) {
+                String stack = ExceptionUtils.getStackTrace(ex);
+                logger.log(Level.SEVERE,"Could not copy program content from {0} to {1}\n\n{2}", 
+                        new Object[]{program.getFile().getAbsolutePath(), 
+                                     programOutDir.getAbsolutePath(), 
+                                     stack});
             }
-        } catch (Exception ex) {
-            String stack = ExceptionUtils.getStackTrace(ex);
-            logger.log(Level.SEVERE,"Could not copy archive content from {0} to {1}\n\n{2}", 
-                    new Object[]{A.getFile().getAbsolutePath(), 
-                                 F.getAbsolutePath(), 
-                                 stack});
-            System.exit(-1);
         }
     }
     
@@ -22,19 +22,29 @@ import java.awt.Dimension;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import ryerson.daspub.Config;
 import ryerson.daspub.Config.SUBMISSION_EVALUATION;
 import ryerson.daspub.Config.SUBMISSION_TYPE;
 import ryerson.daspub.model.Assignment;
 import ryerson.daspub.model.Submission;
+import ryerson.daspub.utility.BuildManifest;
+import ryerson.daspub.utility.HashUtils;
 import ryerson.daspub.utility.ImageUtils;
 import ryerson.daspub.utility.PDFUtils;
+import ryerson.daspub.utility.Rendition;
+import ryerson.daspub.utility.Template;
+import ryerson.daspub.utility.TemplateRegistry;
+import ryerson.daspub.utility.VideoMetadata;
+import ryerson.daspub.utility.VideoMetadataIndex;
+import ryerson.daspub.utility.VideoTranscoder;
 import ryerson.daspub.utility.VideoUtils;
 
 /**
@@ -103,8 +113,12 @@ public class AssignmentPage {
                 Submission s = its.next();
                 if (s.getSourceFile().exists()) {
                     // write thumbnails, full size images
-                    images = writeImage(s,thumb,Config.THUMB_MAX_WIDTH,Config.THUMB_MAX_HEIGHT);
-                    thumbs = writeImage(s,full,Config.IMAGE_MAX_WIDTH,Config.IMAGE_MAX_HEIGHT);
+                    List<Rendition> renditions = new ArrayList<Rendition>();
+                    renditions.add(new Rendition(thumb,Config.THUMB_MAX_WIDTH,Config.THUMB_MAX_HEIGHT));
+                    renditions.add(new Rendition(full,Config.IMAGE_MAX_WIDTH,Config.IMAGE_MAX_HEIGHT));
+                    List<List<File>> files = writeImages(s,renditions);
+                    thumbs = files.get(0);
+                    images = files.get(1);
                     // build html
                     for (int i = 0; i < images.size(); i++) {
                         File f = images.get(i);
@@ -162,14 +176,12 @@ public class AssignmentPage {
             try {
                 List<File> thumbs;
                 List<File> images;
-                thumbs = PDFUtils.writeJPGImageAllPDFPages(A.getSyllabusFile(),
-                                                        thumb,
-                                                        Config.THUMB_MAX_WIDTH,
-                                                        Config.THUMB_MAX_HEIGHT);
-                images = PDFUtils.writeJPGImageAllPDFPages(A.getSyllabusFile(),
-                                                        full,
-                                                        Config.IMAGE_MAX_WIDTH,
-                                                        Config.IMAGE_MAX_HEIGHT);
+                List<Rendition> renditions = new ArrayList<Rendition>();
+                renditions.add(new Rendition(thumb,Config.THUMB_MAX_WIDTH,Config.THUMB_MAX_HEIGHT));
+                renditions.add(new Rendition(full,Config.IMAGE_MAX_WIDTH,Config.IMAGE_MAX_HEIGHT));
+                List<List<File>> files = PDFUtils.writeJPGImagesAllPDFPages(A.getSyllabusFile(),renditions);
+                thumbs = files.get(0);
+                images = files.get(1);
                 // for each page of the syllabus, write out an index thumbnail
                 String url = A.getURLSafeName();
                 sb.append("\n<ul id=\"syllabus\" class=\"gallery\">");
@@ -244,8 +256,13 @@ public class AssignmentPage {
                 Submission s = its.next();
                 if (s.getSourceFile().exists()) {
                     try {
-                        // get video metadata
-                        dim = VideoUtils.getSize(s.getSourceFile());
+                        // get video metadata. probing the video also
+                        // caches its poster image
+                        VideoMetadata metadata = VideoMetadataIndex.getInstance().get(s.getSourceFile());
+                        if (metadata == null) {
+                            throw new IOException("Could not read video " + s.getSourceFile().getAbsolutePath());
+                        }
+                        dim = VideoTranscoder.getOutputSize(metadata.getSize());
                         // write poster for video
                         poster = VideoUtils.writePosterImage(s.getSourceFile(),output);
                         // copy the source file to the output folder
@@ -298,7 +315,7 @@ public class AssignmentPage {
     }
 
     /**
-     * Copy video file from source to output.
+     * Copy video file from source to output, downsized for the web.
      * @param Input Input file
      * @param Output Output file or folder
      * @throws IOException
@@ -308,11 +325,12 @@ public class AssignmentPage {
         if (output.isDirectory()) {
             output = new File(output,Input.getName());
         }
-        FileUtils.copyFile(Input, output);
+        VideoTranscoder.getInstance().transcode(Input,output);
     }
 
     /**
      * Create a page number label from the submission object and file name.
+     * The page count is read from the PDF metadata index.
      * @return
      */
     private static String getPageNumberLabel(Submission S, String Name) {
@@ -323,7 +341,7 @@ public class AssignmentPage {
         Integer page = Integer.valueOf(val.toString());
         page += 1; // pages are enumerated on a zero based index
         // build label
-        int total = S.getPageCount();
+        int total = PDFUtils.getPageCount(S.getSourceFile());
         StringBuilder sb = new StringBuilder();
         sb.append(". Page ");
         sb.append(String.valueOf(page));
@@ -332,6 +350,26 @@ public class AssignmentPage {
         return sb.toString();
     }
 
+    /**
+     * Get the files that an assignment page is derived from: the page
+     * template, the assignment metadata, handout and submission metadata
+     * files, and the submission source files.
+     * @param A Assignment
+     * @return List of files
+     */
+    private static List<File> getInputs(Assignment A) {
+        List<File> files = new ArrayList<File>();
+        files.add(new File(Config.ASSIGNMENT_TEMPLATE_PATH));
+        files.add(new File(A.getFolder(),Config.ASSIGNMENT_METADATA_FILE));
+        files.add(new File(A.getFolder(),Config.ASSIGNMENT_SYLLABUS_FILE));
+        files.add(new File(A.getFolder(),Config.SUBMISSION_METADATA_FILE));
+        Iterator<Submission> it = A.getSubmissions().iterator();
+        while (it.hasNext()) {
+            files.add(it.next().getSourceFile());
+        }
+        return files;
+    }
+
     /**
      * Get thumbnail file name.
      * @param S Submission
@@ -344,26 +382,53 @@ public class AssignmentPage {
         return "";
     }
 
+    /**
+     * Get digest of the configuration values that an assignment page is
+     * derived from.
+     * @param A Assignment
+     * @return Digest
+     */
+    private static String getValuesKey(Assignment A) {
+        return HashUtils.md5(A.getURLSafeName(),
+                             Config.THUMB_MAX_WIDTH,
+                             Config.THUMB_MAX_HEIGHT,
+                             Config.IMAGE_MAX_WIDTH,
+                             Config.IMAGE_MAX_HEIGHT,
+                             Config.VIDEO_MAX_WIDTH,
+                             Config.VIDEO_MAX_HEIGHT);
+    }
+
     /**
      * Write assignment page.
      * @param A Assignment
      * @param Output Output folder
+     * @param Manifest Build manifest
+     * @throws Exception if the folder could not be written
      */
-    public static void Write(Assignment A, File Output) {
+    public static void Write(Assignment A, File Output, BuildManifest Manifest) throws Exception {
+        // skip the assignment if its page is up to date
+        File html = new File(Output,"index.html");
+        List<File> inputs = getInputs(A);
+        String values = getValuesKey(A);
+        if (Manifest.isCurrent(html.getAbsolutePath(), inputs, values)) {
+            logger.log(Level.FINE, "Assignment folder \"{0}\" is up to date", Output.getAbsolutePath());
+            return;
+        }
         logger.log(Level.INFO, "Writing assignment folder \"{0}\"", Output.getAbsolutePath());
         // create the output folder
         Output.mkdirs();
         try {
             // load template
-            String page = FileUtils.readFileToString(new File(Config.ASSIGNMENT_TEMPLATE_PATH));
+            Template template = TemplateRegistry.getInstance().get(new File(Config.ASSIGNMENT_TEMPLATE_PATH));
+            Map<String,String> fields = new HashMap<String,String>();
             // replace template variable fields
-            page = page.replace("${title}", A.getName());
-            page = page.replace("${description}", A.getDescription());
+            fields.put("title", A.getName());
+            fields.put("description", A.getDescription());
             // build index for syllabus
             if (A.hasSyllabusFile()) {
-                page = page.replace("${syllabus}", buildSyllabusIndex(A, Output));
+                fields.put("syllabus", buildSyllabusIndex(A, Output));
             } else {
-                page = page.replace("${syllabus}", "\n<p>Assignment handout not available.</p>");
+                fields.put("syllabus", "\n<p>Assignment handout not available.</p>");
             }
             // build indicies for high pass and low pass document submissions
             if (A.hasImageSubmissions()) {
@@ -379,9 +444,9 @@ public class AssignmentPage {
                                 "Documents - Low Pass",
                                 Output);
                 index += "\n</div>";
-                page = page.replace("${images}", index);
+                fields.put("images", index);
             } else {
-                page = page.replace("${images}", "");
+                fields.put("images", "");
             }
             // build indicies for high pass and low pass video submissions
             if (A.hasVideoSubmission()) {
@@ -397,65 +462,86 @@ public class AssignmentPage {
                                 "Animations and Videos - Low Pass",
                                 Output);
                 index += "\n</div>";
-                page = page.replace("${video}",index);
+                fields.put("video", index);
             } else {
-                page = page.replace("${video}","");
+                fields.put("video", "");
             }
             // write assignment html page
-            File html = new File(Output,"index.html");
             logger.log(Level.INFO,"Writing assignment page \"{0}\"",html.getAbsolutePath());
-            FileUtils.write(html, page);
+            template.write(fields, html);
+            Manifest.record(html.getAbsolutePath(), inputs, Collections.singletonList(html), values);
         } catch (Exception ex) {
             String stack = ExceptionUtils.getStackTrace(ex);
             logger.log(Level.SEVERE,
                        "Could not write assignment {0} to {1}\n\n{2}",
                        new Object[]{A.getName(), Output, stack});
+            throw ex;
         }
     }
 
     /**
-     * Write JPG thumbnail image of submission source file. If the source file
-     * is a multi-page PDF, write all pages.
+     * Write JPG images of the submission source file, one set of files for
+     * each rendition. The source file is decoded once for all renditions. If
+     * the source file is a multi-page PDF, write all pages.
      * @param S Submission
-     * @param Output Output folder
-     * @param Width Maximum image width
-     * @param Height Maximum image height
-     * @return List of output files.
+     * @param Renditions Renditions, where the output is a file or folder
+     * @return List of output files for each rendition, in rendition order.
      */
-    private static List<File> writeImage(Submission S, File Output, int Width, int Height) {
-        // if output is a directory
-        File output = Output;
-        if (output.isDirectory()) {
-            output = new File(output,S.getSourceFileName());
-        }
-        // create parent directory if it does not exist
-        if (!output.getParentFile().exists()) {
-            output.getParentFile().mkdirs();
+    private static List<List<File>> writeImages(Submission S, List<Rendition> Renditions) {
+        // resolve output files and create parent directories
+        List<Rendition> renditions = new ArrayList<Rendition>();
+        Iterator<Rendition> it = Renditions.iterator();
+        while (it.hasNext()) {
+            Rendition r = it.next();
+            File output = r.getOutput();
+            if (output.isDirectory()) {
+                output = new File(output,S.getSourceFileName());
+            }
+            if (!output.getParentFile().exists()) {
+                output.getParentFile().mkdirs();
+            }
+            renditions.add(new Rendition(output,r.getWidth(),r.getHeight()));
         }
         // write output file(s)
         File input = S.getSourceFile();
-        List<File> files = new ArrayList<File>();
+        List<List<File>> files = new ArrayList<List<File>>();
         try {
             if (S.isMultiPagePDF()) {
-                files = PDFUtils.writeJPGImageAllPDFPages(input,output,Width,Height);
+                files = PDFUtils.writeJPGImagesAllPDFPages(input,renditions);
             } else if (S.isSinglePagePDF()) {
-                files = PDFUtils.writeJPGImage(input,output,Width,Height);
+                List<File> written = PDFUtils.writeJPGImages(input,renditions);
+                for (int i=0;i<written.size();i++) {
+                    List<File> ls = new ArrayList<File>();
+                    ls.add(written.get(i));
+                    files.add(ls);
+                }
             } else if (S.isImage()) {
-                ImageUtils.writeJPGImage(input,output,Width,Height);
-                files.add(output);
+                List<File> written = ImageUtils.writeJPGImages(input,renditions);
+                for (int i=0;i<written.size();i++) {
+                    List<File> ls = new ArrayList<File>();
+                    ls.add(written.get(i));
+                    files.add(ls);
+                }
             } else if (S.isVideo()) {
-                VideoUtils.writePosterImage(input,output);
-                files.add(output);
+                for (int i=0;i<renditions.size();i++) {
+                    File output = renditions.get(i).getOutput();
+                    VideoUtils.writePosterImage(input,output);
+                    List<File> ls = new ArrayList<File>();
+                    ls.add(output);
+                    files.add(ls);
+                }
             }
         } catch (Exception ex) {
             String stack = ExceptionUtils.getStackTrace(ex);
             logger.log(Level.SEVERE,
-                    "Could not write image {0} for {1}\n\n{2}",
-                    new Object[]{output.getAbsolutePath(),
-                                 input.getAbsolutePath(),
-                                 stack});
+                    "Could not write images for {0}\n\n{1}",
+                    new Object[]{input.getAbsolutePath(),stack});
+            files.clear();
+        }
+        // ensure there is a file list for each rendition
+        while (files.size() < renditions.size()) {
+            files.add(new ArrayList<File>());
         }
-        // return list of output files
         return files;
     }
 
@@ -24,12 +24,13 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import ryerson.daspub.Config;
 import ryerson.daspub.model.Archive;
+import ryerson.daspub.model.ArchiveSnapshot;
 import ryerson.daspub.model.Course;
 import ryerson.daspub.model.Program;
+import ryerson.daspub.utility.FileDeployer;
 
 /**
  * Builds a course index file.
@@ -40,6 +41,7 @@ public class CourseIndexPublisher implements Runnable {
     private static String FILE_NAME = "index.html";
     
     private Config config;
+    private ArchiveSnapshot snapshot;
     private File output;
     
     private static final Logger logger = Logger.getLogger(CourseIndexPublisher.class.getName());
@@ -52,7 +54,18 @@ public class CourseIndexPublisher implements Runnable {
      * @param Output Output folder
      */
     public CourseIndexPublisher(Config C, File Input, File Output) {
+        this(C,new ArchiveSnapshot(Config.ARCHIVE_PATHS),Input,Output);
+    }
+
+    /**
+     * CourseIndexPublisher constructor
+     * @param C Configuration
+     * @param Snapshot Archive snapshot
+     * @param Output Output folder
+     */
+    public CourseIndexPublisher(Config C, ArchiveSnapshot Snapshot, File Input, File Output) {
         config = C;
+        snapshot = Snapshot;
         output = new File(Output,FILE_NAME);
     }
     
@@ -64,7 +77,7 @@ public class CourseIndexPublisher implements Runnable {
     public void run() {
         // build index
         StringBuilder sb = new StringBuilder();
-        List<Archive> archives = Archive.getArchives(Config.ARCHIVE_PATHS);
+        List<Archive> archives = snapshot.getArchives();
         Iterator<Archive> ita = archives.iterator();
         while (ita.hasNext()) {
             Archive a = ita.next();
@@ -105,7 +118,7 @@ public class CourseIndexPublisher implements Runnable {
         // write file
         try {
             logger.log(Level.INFO,"Writing course index \"{0}\"",output.getAbsolutePath());
-            FileUtils.write(output,sb.toString());
+            FileDeployer.write(output,sb.toString(),null);
         } catch (IOException ex) {
             String stack = ExceptionUtils.getStackTrace(ex);
             logger.log(Level.SEVERE,"Could not write course index \"{0}\"\n\n{1}",
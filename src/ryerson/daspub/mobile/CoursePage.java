@@ -19,17 +19,27 @@
 package ryerson.daspub.mobile;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import ryerson.daspub.Config;
 import ryerson.daspub.model.Assignment;
 import ryerson.daspub.model.Course;
+import ryerson.daspub.utility.BuildManifest;
+import ryerson.daspub.utility.HashUtils;
 import ryerson.daspub.utility.MarkupUtils;
+import ryerson.daspub.utility.ParallelJobRunner;
 import ryerson.daspub.utility.PDFUtils;
+import ryerson.daspub.utility.Rendition;
+import ryerson.daspub.utility.Template;
+import ryerson.daspub.utility.TemplateRegistry;
 
 /**
  * Course page.
@@ -62,14 +72,12 @@ public class CoursePage {
             try {
                 List<File> thumbs;
                 List<File> images;
-                thumbs = PDFUtils.writeJPGImageAllPDFPages(C.getSyllabusFile(),
-                                                thumb,
-                                                Config.THUMB_MAX_WIDTH,
-                                                Config.THUMB_MAX_HEIGHT);
-                images = PDFUtils.writeJPGImageAllPDFPages(C.getSyllabusFile(),
-                                                full,
-                                                Config.IMAGE_MAX_WIDTH,
-                                                Config.IMAGE_MAX_HEIGHT);
+                List<Rendition> renditions = new ArrayList<Rendition>();
+                renditions.add(new Rendition(thumb,Config.THUMB_MAX_WIDTH,Config.THUMB_MAX_HEIGHT));
+                renditions.add(new Rendition(full,Config.IMAGE_MAX_WIDTH,Config.IMAGE_MAX_HEIGHT));
+                List<List<File>> files = PDFUtils.writeJPGImagesAllPDFPages(C.getSyllabusFile(),renditions);
+                thumbs = files.get(0);
+                images = files.get(1);
                 // for each page of the syllabus, write out an index thumbnail
                 sb.append("\n<ul id=\"syllabus\" class=\"gallery\">");
                 for (int i=0;i<images.size();i++) {
@@ -98,35 +106,97 @@ public class CoursePage {
         return sb.toString();
     }    
     
+    /**
+     * Get the files that a course page is derived from: the page template
+     * and the course metadata and syllabus files.
+     * @param C Course
+     * @return List of files
+     */
+    private static List<File> getInputs(Course C) {
+        List<File> files = new ArrayList<File>();
+        files.add(new File(Config.COURSE_TEMPLATE_PATH));
+        files.add(new File(C.getFolder(),Config.COURSE_METADATA_FILE));
+        files.add(new File(C.getFolder(),Config.COURSE_SYLLABUS_FILE));
+        return files;
+    }
+
+    /**
+     * Get digest of the assignment index and configuration values that a
+     * course page is derived from.
+     * @param C Course
+     * @return Digest
+     */
+    private static String getValuesKey(Course C) {
+        StringBuilder sb = new StringBuilder();
+        Iterator<Assignment> it = C.getAssignments().iterator();
+        while (it.hasNext()) {
+            Assignment a = it.next();
+            sb.append(a.getName());
+            sb.append('\n');
+            sb.append(a.getURLSafeName());
+            sb.append('\n');
+        }
+        return HashUtils.md5(sb.toString(),
+                             Config.THUMB_MAX_WIDTH,
+                             Config.THUMB_MAX_HEIGHT,
+                             Config.IMAGE_MAX_WIDTH,
+                             Config.IMAGE_MAX_HEIGHT);
+    }
+
     /**
      * Write course data and HTML index file to specified output folder
+     * @param C Course
      * @param Output Output folder
+     * @param Manifest Build manifest
+     * @param Runner Job runner, to which assignment pages are submitted
+     * @throws Exception if the folder could not be written
      */
-    public static void Write(Course C, File Output) {
+    public static void Write(Course C, File Output, final BuildManifest Manifest, ParallelJobRunner Runner) throws Exception {
         logger.log(Level.INFO, "Writing course folder \"{0}\"", Output.getAbsolutePath());
         try {
             // create the output folder
             Output.mkdirs();
+            // process assignment output
+            Iterator<Assignment> it = C.getAssignments().iterator();
+            while (it.hasNext()) {
+                final Assignment a = it.next();
+                final File assignmentOutputPath = new File(Output,a.getURLSafeName());
+                Runner.submit(a.getFolder().getAbsolutePath(), new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        AssignmentPage.Write(a,assignmentOutputPath,Manifest);
+                        return null;
+                    }
+                });
+            }
+            // skip the course page if it is up to date
+            File index = new File(Output.getAbsolutePath(), "index.html");
+            List<File> inputs = getInputs(C);
+            String values = getValuesKey(C);
+            if (Manifest.isCurrent(index.getAbsolutePath(), inputs, values)) {
+                logger.log(Level.FINE,"Course page \"{0}\" is up to date",index.getAbsolutePath());
+                return;
+            }
             // load index page template file
-            String page = FileUtils.readFileToString(new File(Config.COURSE_TEMPLATE_PATH));
+            Template template = TemplateRegistry.getInstance().get(new File(Config.COURSE_TEMPLATE_PATH));
+            Map<String,String> fields = new HashMap<String,String>();
             // build index page
             String title = C.getCourseCode() + " - " + C.getName();
-            page = page.replace("${title}", title);
-            page = page.replace("${description}", C.getDescription());
-            page = page.replace("${format}", C.getFormat());
+            fields.put("title", title);
+            fields.put("description", C.getDescription());
+            fields.put("format", C.getFormat());
             if (C.hasSyllabusFile()) {
-                page = page.replace("${syllabus}", buildHandoutIndex(C,Output));
+                fields.put("syllabus", buildHandoutIndex(C,Output));
             } else {
-                page = page.replace("${syllabus}", "\n<p>Course syllabus not available.</p>");
+                fields.put("syllabus", "\n<p>Course syllabus not available.</p>");
             }
-            page = page.replace("${instructors}", MarkupUtils.getHTMLUnorderedList(C.getInstructors()));
-            page = page.replace("${spc}", MarkupUtils.getHTMLUnorderedList(C.getSPCFulfilled()));
+            fields.put("instructors", MarkupUtils.getHTMLUnorderedList(C.getInstructors()));
+            fields.put("spc", MarkupUtils.getHTMLUnorderedList(C.getSPCFulfilled()));
             // build assignment index
             List<Assignment> la = C.getAssignments();
             Iterator<Assignment> assignments = la.iterator();
             StringBuilder sb = new StringBuilder();
             sb.append("\n<ul data-role=\"listview\" data-inset=\"true\" data-theme=\"c\">");
-            File assignmentOutputPath = null;
             while (assignments.hasNext()) {
                 Assignment a = assignments.next();
                 // add assignment to index
@@ -135,22 +205,20 @@ public class CoursePage {
                 sb.append("\" data-transition=\"fade\">");
                 sb.append(a.getName());
                 sb.append("</a></li>");
-                // process assignment output
-                assignmentOutputPath = new File(Output,a.getURLSafeName());
-                AssignmentPage.Write(a,assignmentOutputPath);
             }
             sb.append("\n</ul>\n");
-            page = page.replace("${assignments}",sb.toString());
+            fields.put("assignments", sb.toString());
             // write index page
-            File index = new File(Output.getAbsolutePath(), "index.html");
             logger.log(Level.INFO,"Writing course page \"{0}\"",index.getAbsolutePath());
-            FileUtils.write(index, page);
+            template.write(fields, index);
+            Manifest.record(index.getAbsolutePath(), inputs, Collections.singletonList(index), values);
         } catch (Exception ex) {
             String stack = ExceptionUtils.getStackTrace(ex);
             logger.log(Level.SEVERE, "Could not copy course {0} to {1}\n\n{2}", 
                     new Object[]{C.getFolder().getAbsolutePath(),
                                  Output.getAbsolutePath(),
                                  stack});
+            throw ex;
         }
     }
     
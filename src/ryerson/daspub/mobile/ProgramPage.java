@@ -21,10 +21,11 @@ package ryerson.daspub.mobile;
 import ryerson.daspub.model.Program;
 import java.io.File;
 import java.util.Iterator;
-import java.util.logging.Level;
+import java.util.concurrent.Callable;
 import java.util.logging.Logger;
-import org.apache.commons.lang3.exception.ExceptionUtils;
 import ryerson.daspub.model.Course;
+import ryerson.daspub.utility.BuildManifest;
+import ryerson.daspub.utility.ParallelJobRunner;
 
 /**
  * Utility class to publish HTML data for a program
@@ -38,29 +39,26 @@ public class ProgramPage {
     
     /**
      * Write the program HTML to the specified path.  Create the path if it
-     * does not exist.
+     * does not exist. Each course is written by a separate job, so that a
+     * course that fails does not affect the others.
      * @param P Program
      * @param F Output folder
+     * @param Manifest Build manifest
+     * @param Runner Job runner
      */
-    public static void Write(Program P, File F) {
-        try {
-            Iterator<Course> courses = null;
-            Course course = null;
-            File courseOutputPath = null;
-            // process courses
-            courses = P.getCourses();
-            while (courses.hasNext()) {
-                course = courses.next();
-                courseOutputPath = new File(F, course.getURLSafeName());
-                CoursePage.Write(course,courseOutputPath);
-            }
-        } catch (Exception ex) {
-            String stack = ExceptionUtils.getStackTrace(ex);
-            logger.log(Level.SEVERE,"Could not copy archive content from {0} to {1}\n\n{2}", 
-                    new Object[]{P.getFile().getAbsolutePath(), 
-                                 F.getAbsolutePath(), 
-                                 stack});
-            System.exit(-1);
+    public static void Write(Program P, File F, final BuildManifest Manifest, final ParallelJobRunner Runner) {
+        // process courses
+        Iterator<Course> courses = P.getCourses();
+        while (courses.hasNext()) {
+            final Course course = courses.next();
+            final File courseOutputPath = new File(F, course.getURLSafeName());
+            Runner.submit(course.getFolder().getAbsolutePath(), new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    CoursePage.Write(course,courseOutputPath,Manifest,Runner);
+                    return null;
+                }
+            });
         }
     }
     
@@ -24,7 +24,13 @@ import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import ryerson.daspub.model.Archive;
+import ryerson.daspub.model.ArchiveSnapshot;
 import ryerson.daspub.Config;
+import ryerson.daspub.utility.ArchiveCatalog;
+import ryerson.daspub.utility.BuildManifest;
+import ryerson.daspub.utility.ParallelJobRunner;
+import ryerson.daspub.utility.PDFMetadataIndex;
+import ryerson.daspub.utility.VideoMetadataIndex;
 
 /**
  * Mobile publication generator.
@@ -33,6 +39,7 @@ import ryerson.daspub.Config;
 public class PublishMobilePresentationTask implements Runnable {
 
     private Config config;                      // configuration
+    private ArchiveSnapshot snapshot;           // archive model
     private File output;                        // output publication directory
     
     private String index_template = "";         // course index page
@@ -49,7 +56,17 @@ public class PublishMobilePresentationTask implements Runnable {
      * @param Configuration Configuration
      */
     public PublishMobilePresentationTask(Config Configuration) {
+        this(Configuration,new ArchiveSnapshot(Config.ARCHIVE_PATHS));
+    }
+
+    /**
+     * Publisher constructor
+     * @param Configuration Configuration
+     * @param Snapshot Archive snapshot
+     */
+    public PublishMobilePresentationTask(Config Configuration, ArchiveSnapshot Snapshot) {
         config = Configuration;
+        snapshot = Snapshot;
         output = new File(Config.OUTPUT_MOBILE_WORK_PATH);
     }
 
@@ -57,6 +74,8 @@ public class PublishMobilePresentationTask implements Runnable {
     
     /**
      * Run task.
+     * @throws RuntimeException if one or more course or assignment folders
+     * could not be written
      */
     @Override
     public void run() {
@@ -65,13 +84,50 @@ public class PublishMobilePresentationTask implements Runnable {
         if (!output.exists()) {
             output.mkdirs();
         }
-        // process the archives
-        List<Archive> archives = Archive.getArchives(Config.ARCHIVE_PATHS);
-        Iterator<Archive> it = archives.iterator();
-        while (it.hasNext()) {
-            Archive a = it.next();
-            ArchivePage.Write(a,output);
-        }        
+        // load PDF and video metadata from the previous run
+        File index = new File(output,Config.PDF_METADATA_INDEX_FILE);
+        PDFMetadataIndex.getInstance().load(index);
+        File videoIndex = new File(output,Config.VIDEO_METADATA_INDEX_FILE);
+        VideoMetadataIndex.getInstance().load(videoIndex);
+        // load the build manifest from the previous run
+        BuildManifest manifest = new BuildManifest(new File(output,Config.BUILD_MANIFEST_FILE),Config.INCREMENTAL_PUBLISH);
+        manifest.setScope(snapshot.getScope());
+        manifest.load();
+        // scan the archives before starting the worker threads
+        List<Archive> archives = snapshot.getArchives();
+        // process the archives, one job per course and assignment
+        ParallelJobRunner runner = new ParallelJobRunner(Config.PUBLISH_PARALLELISM);
+        int failed = 0;
+        try {
+            Iterator<Archive> it = archives.iterator();
+            while (it.hasNext()) {
+                Archive a = it.next();
+                ArchivePage.Write(a,output,manifest,runner);
+            }
+        } finally {
+            // wait for the pages to be written. the worker threads are
+            // released even if writing the archive pages failed
+            try {
+                failed = runner.awaitCompletion().size();
+                if (failed > 0) {
+                    logger.log(Level.WARNING,"Could not write {0} course or assignment folder(s)",failed);
+                }
+            } catch (InterruptedException ex) {
+                logger.log(Level.SEVERE,"Interrupted while waiting for mobile pages to be written");
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for mobile pages to be written",ex);
+            } finally {
+                // keep the records of the pages that were written
+                PDFMetadataIndex.getInstance().save(index);
+                VideoMetadataIndex.getInstance().save(videoIndex);
+                manifest.save();
+                // record the spreadsheets that were parsed while writing the pages
+                ArchiveCatalog.getInstance().save();
+            }
+        }
+        if (failed > 0) {
+            throw new RuntimeException("Could not write " + failed + " course or assignment folder(s)");
+        }
         logger.log(Level.INFO,"DONE publish mobile presentation task");
     }
 
@@ -32,6 +32,7 @@ import ryerson.daspub.utility.URLUtils;
 public class Archive {
     
     private File source;
+    private List<Program> programs;     // cached programs, if scanned
     
     //--------------------------------------------------------------------------
 
@@ -42,6 +43,17 @@ public class Archive {
     public Archive(File Source) {
         source = Source;
     }
+
+    /**
+     * Archive constructor. Used by ArchiveSnapshot to create an archive with
+     * a fixed list of programs.
+     * @param Source Source folder
+     * @param Programs Programs
+     */
+    Archive(File Source, List<Program> Programs) {
+        source = Source;
+        programs = Programs;
+    }
     
     //--------------------------------------------------------------------------
 
@@ -90,6 +102,9 @@ public class Archive {
      * @return 
      */
     public Iterator<Program> getPrograms() {
+        if (programs != null) {
+            return programs.iterator();
+        }
         ArrayList<Program> result = new ArrayList<Program>();
         if (source.exists()) {
             File[] files = source.listFiles(new FolderFileFilter());
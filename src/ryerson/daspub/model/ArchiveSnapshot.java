@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2011 Davis Marques
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ */
+package ryerson.daspub.model;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import ryerson.daspub.Config;
+import ryerson.daspub.utility.ArchiveCatalog;
+
+/**
+ * Immutable picture of one or more archives. The archive folders are walked
+ * once, the first time the snapshot is accessed. Every program, course and
+ * assignment folder is listed once, and every submission spreadsheet is
+ * parsed once. Folders are scanned in parallel, on DISCOVERY_THREADS threads.
+ * Folders, spreadsheets and metadata files that have not changed since the
+ * last run are taken from the ArchiveCatalog, which is saved after the scan.
+ * The resulting model objects return their cached children and can be
+ * shared by any number of publishing tasks.
+ * @author dmarques
+ */
+public class ArchiveSnapshot {
+
+    private List<String> paths;
+    private List<File> scope;
+    private List<Archive> archives;
+
+    private static final Logger logger = Logger.getLogger(ArchiveSnapshot.class.getName());
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * ArchiveSnapshot constructor. The archives are not scanned until the
+     * snapshot is first accessed.
+     * @param Paths Archive paths
+     */
+    public ArchiveSnapshot(List<String> Paths) {
+        this(Paths,null);
+    }
+
+    /**
+     * ArchiveSnapshot constructor. The archives are not scanned until the
+     * snapshot is first accessed.
+     * @param Paths Archive paths
+     * @param Scope Folders that changed since the archives were last 
+     * published, or null if any folder may have changed.
+     */
+    public ArchiveSnapshot(List<String> Paths, List<File> Scope) {
+        paths = new ArrayList<String>(Paths);
+        if (Scope != null) {
+            scope = Collections.unmodifiableList(new ArrayList<File>(Scope));
+        }
+    }
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Get archives. Scans the archive folders on first access.
+     * @return List of archives
+     */
+    public synchronized List<Archive> getArchives() {
+        if (archives == null) {
+            long start = System.currentTimeMillis();
+            ExecutorService executor = Executors.newFixedThreadPool(Math.max(1,Config.DISCOVERY_THREADS));
+            try {
+                archives = Collections.unmodifiableList(scan(executor));
+            } finally {
+                executor.shutdown();
+            }
+            ArchiveCatalog.getInstance().save();
+            logger.log(Level.INFO,"Scanned {0} archive(s) in {1} ms",
+                    new Object[]{archives.size(),System.currentTimeMillis() - start});
+        }
+        return archives;
+    }
+
+    /**
+     * Get the folders that changed since the archives were last published.
+     * Publishing tasks only need to build outputs derived from files in these
+     * folders.
+     * @return Changed folders, or null if any folder may have changed.
+     */
+    public List<File> getScope() {
+        return scope;
+    }
+
+    /**
+     * Get archive paths.
+     * @return List of archive paths
+     */
+    public List<String> getPaths() {
+        return Collections.unmodifiableList(paths);
+    }
+
+    /**
+     * Run tasks on the executor and wait for their results.
+     * @param Executor Executor
+     * @param Tasks Tasks
+     * @return Task results, in task order
+     */
+    private static <T> List<T> invokeAll(ExecutorService Executor, List<Callable<T>> Tasks) {
+        List<T> results = new ArrayList<T>(Tasks.size());
+        try {
+            List<Future<T>> futures = Executor.invokeAll(Tasks);
+            Iterator<Future<T>> it = futures.iterator();
+            while (it.hasNext()) {
+                results.add(it.next().get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while scanning archives",ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new RuntimeException(ex.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * List folders in parallel.
+     * @param Executor Executor
+     * @param Folders Folders
+     * @return Folder listings, in folder order
+     */
+    private static List<FolderListing> list(ExecutorService Executor, List<File> Folders) {
+        List<Callable<FolderListing>> tasks = new ArrayList<Callable<FolderListing>>();
+        Iterator<File> it = Folders.iterator();
+        while (it.hasNext()) {
+            final File folder = it.next();
+            tasks.add(new Callable<FolderListing>() {
+                @Override
+                public FolderListing call() {
+                    return new FolderListing(folder);
+                }
+            });
+        }
+        return invokeAll(Executor,tasks);
+    }
+
+    /**
+     * Scan the archive folders one level at a time. All folders at a level
+     * are listed in parallel, then all assignments and courses are created
+     * in parallel, so that the scan time grows with the depth of the archive
+     * rather than with the number of folders.
+     * @param Executor Executor
+     * @return Archives
+     */
+    private List<Archive> scan(ExecutorService Executor) {
+        // list archive, program and course folders
+        List<File> archiveFolders = new ArrayList<File>();
+        Iterator<String> it = paths.iterator();
+        while (it.hasNext()) {
+            archiveFolders.add(new File(it.next()));
+        }
+        List<FolderListing> archiveListings = list(Executor,archiveFolders);
+        List<File> programFolders = getFolders(archiveListings);
+        List<FolderListing> programListings = list(Executor,programFolders);
+        List<File> courseFolders = getFolders(programListings);
+        final List<FolderListing> courseListings = list(Executor,courseFolders);
+        // create assignments
+        List<File> assignmentFolders = getFolders(courseListings);
+        List<Callable<Assignment>> assignmentTasks = new ArrayList<Callable<Assignment>>();
+        Iterator<File> ita = assignmentFolders.iterator();
+        while (ita.hasNext()) {
+            final File folder = ita.next();
+            assignmentTasks.add(new Callable<Assignment>() {
+                @Override
+                public Assignment call() {
+                    return new Assignment(folder,new FolderListing(folder));
+                }
+            });
+        }
+        List<Assignment> assignments = invokeAll(Executor,assignmentTasks);
+        // create courses
+        List<Callable<Course>> courseTasks = new ArrayList<Callable<Course>>();
+        int offset = 0;
+        for (int i=0;i<courseFolders.size();i++) {
+            final File folder = courseFolders.get(i);
+            final FolderListing listing = courseListings.get(i);
+            int count = listing.getFolders().size();
+            final List<Assignment> children = Collections.unmodifiableList(
+                    new ArrayList<Assignment>(assignments.subList(offset,offset + count)));
+            offset += count;
+            courseTasks.add(new Callable<Course>() {
+                @Override
+                public Course call() {
+                    return new Course(folder,listing,children);
+                }
+            });
+        }
+        List<Course> courses = invokeAll(Executor,courseTasks);
+        // create programs and archives
+        List<Program> programs = new ArrayList<Program>();
+        offset = 0;
+        for (int i=0;i<programFolders.size();i++) {
+            int count = programListings.get(i).getFolders().size();
+            List<Course> children = new ArrayList<Course>(courses.subList(offset,offset + count));
+            offset += count;
+            programs.add(new Program(programFolders.get(i),Collections.unmodifiableList(children)));
+        }
+        List<Archive> items = new ArrayList<Archive>();
+        offset = 0;
+        for (int i=0;i<archiveFolders.size();i++) {
+            int count = archiveListings.get(i).getFolders().size();
+            List<Program> children = new ArrayList<Program>(programs.subList(offset,offset + count));
+            offset += count;
+            items.add(new Archive(archiveFolders.get(i),Collections.unmodifiableList(children)));
+        }
+        return items;
+    }
+
+    /**
+     * Get the subfolders of each listed folder.
+     * @param Listings Folder listings
+     * @return Subfolders, in listing order
+     */
+    private static List<File> getFolders(List<FolderListing> Listings) {
+        List<File> folders = new ArrayList<File>();
+        Iterator<FolderListing> it = Listings.iterator();
+        while (it.hasNext()) {
+            folders.addAll(it.next().getFolders());
+        }
+        return folders;
+    }
+
+} // end class
@@ -21,6 +21,7 @@ package ryerson.daspub.model;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -31,7 +32,7 @@ import ryerson.daspub.Config;
 import ryerson.daspub.Config.STATUS;
 import ryerson.daspub.Config.SUBMISSION_EVALUATION;
 import ryerson.daspub.Config.SUBMISSION_TYPE;
-import ryerson.daspub.utility.MarkupUtils;
+import ryerson.daspub.utility.ArchiveCatalog;
 import ryerson.daspub.utility.SubmissionSpreadsheetAdapter;
 import ryerson.daspub.utility.URLUtils;
 
@@ -49,6 +50,9 @@ public class Assignment {
 
     private File source;
     private String description = "";
+    private FolderListing listing;              // cached folder contents, if scanned
+    private List<Submission> submissions;       // cached submissions, if scanned and loaded
+    private boolean conforming = false;         // cached spreadsheet conformance, if scanned and loaded
 
     private static final Logger logger = Logger.getLogger(Assignment.class.getName());
 
@@ -63,6 +67,19 @@ public class Assignment {
         parseMetadataFile();
     }
 
+    /**
+     * Assignment constructor. Used by ArchiveSnapshot to create an assignment
+     * with known folder contents. The submission spreadsheet is parsed once,
+     * when the submissions are first requested.
+     * @param F Source folder
+     * @param Listing Source folder contents
+     */
+    Assignment(File F, FolderListing Listing) {
+        source = F;
+        listing = Listing;
+        parseMetadataFile();
+    }
+
     //--------------------------------------------------------------------------
 
     /**
@@ -122,6 +139,9 @@ public class Assignment {
      * @return List of submissions.
      */
     public List<Submission> getSubmissions() {
+        if (listing != null) {
+            return loadSubmissions();
+        }
         File file = new File(this.source,Config.SUBMISSION_METADATA_FILE);
         try {
             SubmissionSpreadsheetAdapter adapter = new SubmissionSpreadsheetAdapter(file);
@@ -134,6 +154,39 @@ public class Assignment {
         return new ArrayList<Submission>();
     }
 
+    /**
+     * Read submissions, passing each one to the handler in spreadsheet
+     * order. If the submissions have already been loaded, they are passed
+     * from memory, otherwise each one is passed as its spreadsheet row is
+     * read and the submissions are not kept. Reading stops when the handler
+     * asks to stop.
+     * @param H Submission handler
+     */
+    public void readSubmissions(SubmissionSpreadsheetAdapter.Handler H) {
+        List<Submission> items = null;
+        synchronized (this) {
+            items = submissions;
+        }
+        if (items != null) {
+            Iterator<Submission> it = items.iterator();
+            while (it.hasNext()) {
+                if (!H.handle(it.next())) {
+                    return;
+                }
+            }
+            return;
+        }
+        File file = new File(this.source,Config.SUBMISSION_METADATA_FILE);
+        try {
+            SubmissionSpreadsheetAdapter adapter = new SubmissionSpreadsheetAdapter(file);
+            adapter.read(H);
+        } catch (Exception ex) {
+            String stack = ExceptionUtils.getStackTrace(ex);
+            logger.log(Level.SEVERE,"Could not load submissions from \"{0}\".\n\n{1}",
+                    new Object[]{file.getAbsolutePath(),stack});
+        }
+    }
+
     /**
      * Get submissions by type.
      * @param Type
@@ -176,8 +229,9 @@ public class Assignment {
      * @return Returns null if file does not exist.
      */
     public File getSyllabusFile() {
-        File file = new File(source,Config.ASSIGNMENT_SYLLABUS_FILE);
-        if (file.exists()) return file;
+        if (hasFile(Config.ASSIGNMENT_SYLLABUS_FILE)) {
+            return new File(source,Config.ASSIGNMENT_SYLLABUS_FILE);
+        }
         return null;
      }
 
@@ -203,11 +257,30 @@ public class Assignment {
      * @returns True if submission metadata conforms to requirement, false otherwise.
      */
     public boolean hasConformingSubmissionMetadataFile() {
+        if (listing != null) {
+            loadSubmissions();
+            synchronized (this) {
+                return conforming;
+            }
+        }
         File file = new File(this.source,Config.SUBMISSION_METADATA_FILE);
         SubmissionSpreadsheetAdapter adapter = new SubmissionSpreadsheetAdapter(file);
         return adapter.hasConformingSubmissionMetadataFile();
     }
 
+    /**
+     * Determine if the assignment folder contains the named file.
+     * @param Name File name
+     * @return True if the file exists, false otherwise.
+     */
+    private boolean hasFile(String Name) {
+        if (listing != null) {
+            return listing.hasFile(Name);
+        }
+        File file = new File(source,Name);
+        return file.exists();
+    }
+
     /**
      * Determine if the assignment has submissions that are images.
      * @return True if assignment contains an image submission.
@@ -228,8 +301,7 @@ public class Assignment {
      * @return True if file exists, false otherwise.
      */
     public boolean hasMetadataFile() {
-        File file = new File(source,Config.ASSIGNMENT_METADATA_FILE);
-        return file.exists();
+        return hasFile(Config.ASSIGNMENT_METADATA_FILE);
     }
 
     /**
@@ -237,8 +309,7 @@ public class Assignment {
      * @return
      */
     public boolean hasSubmissionMetadataFile() {
-        File file = new File(source,Config.SUBMISSION_METADATA_FILE);
-        return file.exists();
+        return hasFile(Config.SUBMISSION_METADATA_FILE);
     }
 
     /**
@@ -258,8 +329,7 @@ public class Assignment {
      * @return True if file exists, false otherwise.
      */
     public boolean hasSyllabusFile() {
-        File file = new File(source,Config.ASSIGNMENT_SYLLABUS_FILE);
-        return file.exists();
+        return hasFile(Config.ASSIGNMENT_SYLLABUS_FILE);
     }
 
     /**
@@ -276,13 +346,37 @@ public class Assignment {
         return false;
     }
 
+    /**
+     * Load and cache the submissions and spreadsheet conformance flag, if
+     * they have not already been loaded.
+     * @return Submissions
+     */
+    private synchronized List<Submission> loadSubmissions() {
+        if (submissions != null) {
+            return submissions;
+        }
+        File file = new File(this.source,Config.SUBMISSION_METADATA_FILE);
+        try {
+            SubmissionSpreadsheetAdapter adapter = new SubmissionSpreadsheetAdapter(file);
+            submissions = Collections.unmodifiableList(adapter.getSubmissions());
+            conforming = true;
+        } catch (Exception ex) {
+            String stack = ExceptionUtils.getStackTrace(ex);
+            logger.log(Level.SEVERE,"Could not load submissions from \"{0}\".\n\n{1}",
+                    new Object[]{file.getAbsolutePath(),stack});
+            submissions = Collections.emptyList();
+            conforming = false;
+        }
+        return submissions;
+    }
+
     /**
      * Parse the metadata file.
      */
     private void parseMetadataFile() {
         File file = new File(source,Config.ASSIGNMENT_METADATA_FILE);
-        if (file.exists()) {
-            Map<String,String> vals = MarkupUtils.parse(file);
+        if (hasMetadataFile()) {
+            Map<String,String> vals = ArchiveCatalog.getInstance().parse(file);
             if (vals.containsKey("Description")) {
                 description = vals.get("Description");
             }
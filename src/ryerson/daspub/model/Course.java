@@ -27,6 +27,7 @@ import java.util.logging.Logger;
 import ryerson.daspub.Config;
 import ryerson.daspub.Config.STATUS;
 import ryerson.daspub.utility.FolderFileFilter;
+import ryerson.daspub.utility.ArchiveCatalog;
 import ryerson.daspub.utility.MarkupUtils;
 import ryerson.daspub.utility.URLUtils;
 
@@ -41,6 +42,8 @@ public class Course {
     private String format = "";                             // course format
     private List<String> instructors = new ArrayList<String>();   // instructors
     private List<String> spc = new ArrayList<String>();           // student performance criteria
+    private List<Assignment> assignments;                   // cached assignments, if scanned
+    private FolderListing listing;                          // cached folder contents, if scanned
     
     private static final Logger logger = Logger.getLogger(Course.class.getName());
 
@@ -55,12 +58,29 @@ public class Course {
         parseDescriptionFile();
     }
 
+    /**
+     * Course constructor. Used by ArchiveSnapshot to create a course with
+     * a fixed list of assignments and known folder contents.
+     * @param Input Source folder
+     * @param Listing Source folder contents
+     * @param Assignments Assignments
+     */
+    Course(File Input, FolderListing Listing, List<Assignment> Assignments) {
+        source = Input;
+        listing = Listing;
+        assignments = Assignments;
+        parseDescriptionFile();
+    }
+
     //--------------------------------------------------------------------------
     
     /**
      * Get assignment iterator.
      */
     public List<Assignment> getAssignments() {
+        if (assignments != null) {
+            return assignments;
+        }
         ArrayList<Assignment> items = new ArrayList<Assignment>();
         File[] files = source.listFiles(new FolderFileFilter());
         for (int i = 0; i < files.length; i++) {
@@ -207,8 +227,9 @@ public class Course {
      * @return Returns null if file does not exist.
      */
     public File getSyllabusFile() {
-        File file = new File(source,Config.COURSE_SYLLABUS_FILE);
-        if (file.exists()) return file;
+        if (hasFile(Config.COURSE_SYLLABUS_FILE)) {
+            return new File(source,Config.COURSE_SYLLABUS_FILE);
+        }
         return null;
     }
     
@@ -231,12 +252,24 @@ public class Course {
         return false;
     }
     
+    /**
+     * Determine if the course folder contains the named file.
+     * @param Name File name
+     * @return True if the file exists, false otherwise.
+     */
+    private boolean hasFile(String Name) {
+        if (listing != null) {
+            return listing.hasFile(Name);
+        }
+        File file = new File(source,Name);
+        return file.exists();
+    }
+
     /**
      * Determine if course has handout file
      */
     public boolean hasSyllabusFile() {
-        File file = new File(source,Config.COURSE_SYLLABUS_FILE);
-        return file.exists();
+        return hasFile(Config.COURSE_SYLLABUS_FILE);
     }
     
     /**
@@ -244,8 +277,7 @@ public class Course {
      * @return 
      */
     public boolean hasMetadataFile() {
-        File file = new File(source,Config.COURSE_METADATA_FILE);
-        return file.exists();
+        return hasFile(Config.COURSE_METADATA_FILE);
     }
     
     /**
@@ -253,8 +285,8 @@ public class Course {
      */
     private void parseDescriptionFile() {
         File file = new File(source,Config.COURSE_METADATA_FILE);
-        if (file.exists()) {
-            Map<String,String> vals = MarkupUtils.parse(file);
+        if (hasMetadataFile()) {
+            Map<String,String> vals = ArchiveCatalog.getInstance().parse(file);
             if (vals.containsKey("Description")) {
                 description = vals.get("Description");
             }
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2011 Davis Marques
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ */
+package ryerson.daspub.model;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import ryerson.daspub.utility.ArchiveCatalog;
+import ryerson.daspub.utility.FileAttributeIndex;
+
+/**
+ * Contents of a single folder, read once when the archive is scanned. Splits
+ * the folder entries into subfolders and the names of the files it contains.
+ * The attributes of each entry are recorded in the FileAttributeIndex. The
+ * folder is read through the ArchiveCatalog, so an unchanged folder is not
+ * read again.
+ * @author dmarques
+ */
+class FolderListing {
+
+    private List<File> folders = new ArrayList<File>();
+    private Set<String> files;
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * FolderListing constructor
+     * @param Folder Source folder
+     */
+    FolderListing(File Folder) {
+        if (isCaseSensitive()) {
+            files = new HashSet<String>();
+        } else {
+            files = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+        }
+        FileAttributeIndex index = FileAttributeIndex.getInstance();
+        Iterator<File> it = ArchiveCatalog.getInstance().list(Folder).iterator();
+        while (it.hasNext()) {
+            File f = it.next();
+            if (index.isDirectory(f)) {
+                folders.add(f);
+            } else {
+                files.add(f.getName());
+            }
+        }
+    }
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Get subfolders.
+     * @return List of subfolders
+     */
+    List<File> getFolders() {
+        return Collections.unmodifiableList(folders);
+    }
+
+    /**
+     * Determine if the folder contains a file with the specified name.
+     * @param Name File name
+     * @return True if the file exists, false otherwise.
+     */
+    boolean hasFile(String Name) {
+        return files.contains(Name);
+    }
+
+    /**
+     * Determine if the file system distinguishes file names by case.
+     * @return True if file names are case sensitive, false otherwise.
+     */
+    private static boolean isCaseSensitive() {
+        return !new File("a").equals(new File("A"));
+    }
+
+} // end class
@@ -21,6 +21,7 @@ package ryerson.daspub.model;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import ryerson.daspub.utility.FolderFileFilter;
 import ryerson.daspub.utility.URLUtils;
 
@@ -31,6 +32,7 @@ import ryerson.daspub.utility.URLUtils;
 public class Program {
     
     private File source;
+    private List<Course> courses;       // cached courses, if scanned
     
     //--------------------------------------------------------------------------
 
@@ -41,6 +43,17 @@ public class Program {
     public Program(File Source) {
         source = Source;
     }
+
+    /**
+     * Program constructor. Used by ArchiveSnapshot to create a program with
+     * a fixed list of courses.
+     * @param Source Source folder
+     * @param Courses Courses
+     */
+    Program(File Source, List<Course> Courses) {
+        source = Source;
+        courses = Courses;
+    }
     
     //--------------------------------------------------------------------------
 
@@ -57,6 +70,9 @@ public class Program {
      * @return 
      */
     public Iterator<Course> getCourses() {
+        if (courses != null) {
+            return courses.iterator();
+        }
         ArrayList<Course> result = new ArrayList<Course>();
         File[] files = source.listFiles(new FolderFileFilter());
         for (int i=0;i<files.length;i++) {
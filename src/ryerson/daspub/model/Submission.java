@@ -19,14 +19,13 @@
 package ryerson.daspub.model;
 
 import java.io.File;
-import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.filefilter.SuffixFileFilter;
-import org.apache.commons.lang3.exception.ExceptionUtils;
-import org.jpedal.PdfDecoder;
-import org.jpedal.exception.PdfException;
 import ryerson.daspub.Config;
+import ryerson.daspub.utility.FileAttributeIndex;
+import ryerson.daspub.utility.PDFMetadata;
+import ryerson.daspub.utility.PDFMetadataIndex;
 import ryerson.daspub.utility.URLUtils;
 
 /**
@@ -193,16 +192,11 @@ public class Submission {
      */
     public int getPageCount() {
         int count = 0;
-        if (source.exists()) {
+        if (FileAttributeIndex.getInstance().exists(source)) {
             if (isPDF()) {
-                PdfDecoder pdf = new PdfDecoder(true);
-                try {
-                    pdf.openPdfFile(source.getAbsolutePath());
-                    count = pdf.getPageCount();
-                } catch (PdfException ex) {
-                    String stack = ExceptionUtils.getStackTrace(ex);
-                    logger.log(Level.SEVERE, "Could not read PDF file {0}.\n\n{1}",
-                            new Object[]{source.getAbsolutePath(), stack});
+                PDFMetadata metadata = PDFMetadataIndex.getInstance().get(source);
+                if (metadata != null) {
+                    count = metadata.getPageCount();
                 }
             } else {
                 count = 1; // single page pdf or image
@@ -320,7 +314,7 @@ public class Submission {
      * @return Empty string if the source file does not exist.
      */
     public String getURLSafeName() {
-        if (source.exists()) {
+        if (FileAttributeIndex.getInstance().exists(source)) {
             String name = source.getName();
             return URLUtils.getURLSafeName(name);
         }
@@ -339,7 +333,7 @@ public class Submission {
      * @return True if source file exists, false otherwise.
      */
     public boolean hasSourceFile() {
-        if (source != null && source.exists()) {
+        if (source != null && FileAttributeIndex.getInstance().exists(source)) {
             return true;
         }
         return false;
@@ -387,19 +381,8 @@ public class Submission {
      * @return True if submission is a single page PDF, false otherwise.
      */
     public boolean isSinglePagePDF() {
-        if (isPDF()) {
-            PdfDecoder pdf = new PdfDecoder(true);
-            try {
-                pdf.openPdfFile(source.getAbsolutePath());
-                int count = pdf.getPageCount();
-                if (count == 1) {
-                    return true;
-                }
-            } catch (PdfException ex) {
-                String stack = ExceptionUtils.getStackTrace(ex);
-                logger.log(Level.SEVERE, "Could not read PDF file {0}.\n\n{1}",
-                        new Object[]{source.getAbsolutePath(), stack});
-            }
+        if (isPDF() && getPageCount() == 1) {
+            return true;
         }
         return false;
     }
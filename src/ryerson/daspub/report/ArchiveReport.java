@@ -18,6 +18,9 @@
  */
 package ryerson.daspub.report;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Iterator;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -37,26 +40,50 @@ public class ArchiveReport {
     /**
      * Get status report.
      * @param A Archive
-     * @return 
+     * @return HTML status report
      */
     public static String GetHTML(Archive A) {
+        StringWriter writer = new StringWriter();
+        try {
+            Write(A,writer);
+        } catch (IOException ex) {
+            // a string writer does not throw
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Write status report.
+     * @param A Archive
+     * @param W Writer
+     * @throws IOException
+     */
+    public static void Write(Archive A, Writer W) throws IOException {
+        Write(A,W,null);
+    }
+
+    /**
+     * Write status report and add each course to the status counter.
+     * @param A Archive
+     * @param W Writer
+     * @param Counter Status counter or null
+     * @throws IOException
+     */
+    public static void Write(Archive A, Writer W, StatusCounter Counter) throws IOException {
         logger.log(Level.INFO,"Building report for archive {0}",A.getFile().getAbsolutePath());
         // start report block
-        StringBuilder sb = new StringBuilder();
-        sb.append("\n\n<div class='archive'>");
-        sb.append("\n<h1>");
-        sb.append(A.getFile().getAbsolutePath());
-        sb.append("</h1>");
+        W.append("\n\n<div class='archive'>");
+        W.append("\n<h1>");
+        W.append(A.getFile().getAbsolutePath());
+        W.append("</h1>");
         // get program report
         Iterator<Program> programs = A.getPrograms();
         while (programs.hasNext()) {
             Program program = programs.next();
-            sb.append(ProgramReport.GetHTML(program));
+            ProgramReport.Write(program,W,Counter);
         }
         // close report block
-        sb.append("</div>");
-        // return result
-        return sb.toString();
+        W.append("</div>");
     }
     
 } // end class
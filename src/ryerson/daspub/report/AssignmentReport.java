@@ -18,6 +18,9 @@
  */
 package ryerson.daspub.report;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.List;
 import java.util.logging.Logger;
 import ryerson.daspub.Config;
@@ -40,68 +43,82 @@ public class AssignmentReport {
      * @return HTML status report
      */
     public static String GetHTML(Assignment A) {
-        StringBuilder sb = new StringBuilder();
+        StringWriter writer = new StringWriter();
+        try {
+            Write(A,writer);
+        } catch (IOException ex) {
+            // a string writer does not throw
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Write status report.
+     * @param A Assignment
+     * @param W Writer
+     * @throws IOException
+     */
+    public static void Write(Assignment A, Writer W) throws IOException {
         // get the assignment status
-        sb.append("\n\t<div class='assignment ");
-        // sb.append(A.getPublicationStatus().toString().toLowerCase());
-        sb.append("'>");
+        W.append("\n\t<div class='assignment ");
+        // W.append(A.getPublicationStatus().toString().toLowerCase());
+        W.append("'>");
         // item title
-        sb.append("\n\t\t<h1>");
-        sb.append(A.getName());
-        sb.append("</h1>");
+        W.append("\n\t\t<h1>");
+        W.append(A.getName());
+        W.append("</h1>");
         // assignment metadata file
-        sb.append("\n\t\t<ul class='marked'>");
+        W.append("\n\t\t<ul class='marked'>");
         if (A.hasMetadataFile()) {
-            sb.append("\n\t\t\t<li class='checked'>Has assignment metadata file (");
+            W.append("\n\t\t\t<li class='checked'>Has assignment metadata file (");
         } else {
-            sb.append("\n\t\t\t<li class='crossed'>Does not have assignment metadata file (");
+            W.append("\n\t\t\t<li class='crossed'>Does not have assignment metadata file (");
         }
-        sb.append(Config.ASSIGNMENT_METADATA_FILE);
-        sb.append(")</li>");
+        W.append(Config.ASSIGNMENT_METADATA_FILE);
+        W.append(")</li>");
         // assignment handout file
         if (A.hasSyllabusFile()) {
-            sb.append("\n\t\t\t<li class='checked'>Has assignment handout PDF (");
+            W.append("\n\t\t\t<li class='checked'>Has assignment handout PDF (");
         } else {
-            sb.append("\n\t\t\t<li class='crossed'>Does not have assignment handout PDF (");
+            W.append("\n\t\t\t<li class='crossed'>Does not have assignment handout PDF (");
         }
-        sb.append(Config.ASSIGNMENT_SYLLABUS_FILE);
-        sb.append(")</li>");
+        W.append(Config.ASSIGNMENT_SYLLABUS_FILE);
+        W.append(")</li>");
         // submission metadata files
         if (A.hasSubmissionMetadataFile()) {
-            sb.append("\n\t\t\t<li class='checked'>Has submission metadata file (");
+            W.append("\n\t\t\t<li class='checked'>Has submission metadata file (");
         } else {
-            sb.append("\n\t\t\t<li class='crossed'>Does not have submission metadata file (");
+            W.append("\n\t\t\t<li class='crossed'>Does not have submission metadata file (");
         }
-        sb.append(Config.SUBMISSION_METADATA_FILE);
-        sb.append(")</li>");
+        W.append(Config.SUBMISSION_METADATA_FILE);
+        W.append(")</li>");
         // submission metadata file conforms to requirement
         boolean conforms = false;
         if (A.hasConformingSubmissionMetadataFile()) {
             conforms = true;
-            sb.append("\n\t\t\t<li class='checked'>Submission metadata file conforms to requirements for parsing.");
+            W.append("\n\t\t\t<li class='checked'>Submission metadata file conforms to requirements for parsing.");
         } else {
-            sb.append("\n\t\t\t<li class='crossed'>Submission metadata file does not conform to requirements for parsing.");
+            W.append("\n\t\t\t<li class='crossed'>Submission metadata file does not conform to requirements for parsing.");
         }
         // completed submission metadata
         if (conforms && A.hasSubmissions()) {
-            sb.append("\n\t\t\t<li class='checked'>Has completed submission metadata.</li>");
+            W.append("\n\t\t\t<li class='checked'>Has completed submission metadata.</li>");
         } else {
-            sb.append("\n\t\t\t<li class='crossed'>Does not have completed submission metadata.</li>");
+            W.append("\n\t\t\t<li class='crossed'>Does not have completed submission metadata.</li>");
         }        
         // submission files
         if (conforms && A.hasSubmissions()) {
             List<Submission> ls = A.getSubmissions();
             int count = ls.size();
-            sb.append("\n\t\t\t<li class='checked'>Has ");
-            sb.append(String.valueOf(count));
-            sb.append(" student work files.</li>");
+            W.append("\n\t\t\t<li class='checked'>Has ");
+            W.append(String.valueOf(count));
+            W.append(" student work files.</li>");
         } else {
-            sb.append("\n\t\t\t<li class='crossed'>Does not have student work files.</li>");
+            W.append("\n\t\t\t<li class='crossed'>Does not have student work files.</li>");
         }        
-        // return results
-        sb.append("\n\t\t</ul>");
-        sb.append("\n\t</div><!-- /assignment -->");
-        return sb.toString();
+        // close block
+        W.append("\n\t\t</ul>");
+        W.append("\n\t</div><!-- /assignment -->");
     }
     
 } // end class
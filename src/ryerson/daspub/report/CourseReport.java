@@ -18,11 +18,15 @@
  */
 package ryerson.daspub.report;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Iterator;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import ryerson.daspub.Config;
+import ryerson.daspub.Config.STATUS;
 import ryerson.daspub.model.Assignment;
 import ryerson.daspub.model.Course;
 
@@ -39,67 +43,93 @@ public class CourseReport {
     /**
      * Get status report.
      * @param C Course
-     * @return 
+     * @return HTML status report
      */
     public static String GetHTML(Course C) {
+        StringWriter writer = new StringWriter();
+        try {
+            Write(C,writer);
+        } catch (IOException ex) {
+            // a string writer does not throw
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Write status report.
+     * @param C Course
+     * @param W Writer
+     * @throws IOException
+     */
+    public static void Write(Course C, Writer W) throws IOException {
+        Write(C,W,null);
+    }
+
+    /**
+     * Write status report and add the course to the status counter.
+     * @param C Course
+     * @param W Writer
+     * @param Counter Status counter or null
+     * @throws IOException
+     */
+    public static void Write(Course C, Writer W, StatusCounter Counter) throws IOException {
         logger.log(Level.INFO,"Building report for course {0}",C.getFolder().getAbsolutePath());
+        STATUS status = Counter != null ? Counter.record(C) : C.getStatus();
         // toggle block
-        StringBuilder sb = new StringBuilder();
-        sb.append("\n<script type='text/javascript'>");
-        sb.append("animatedcollapse.addDiv('");
-        sb.append(C.getURLSafeName());
-        sb.append("','fade=1')");
-        sb.append("</script>");
-        sb.append("\n<div class='course'>");
+        W.append("\n<script type='text/javascript'>");
+        W.append("animatedcollapse.addDiv('");
+        W.append(C.getURLSafeName());
+        W.append("','fade=1')");
+        W.append("</script>");
+        W.append("\n<div class='course'>");
         // item title
-        sb.append("\n\t<div class='title ");
-        sb.append(C.getStatus().toString().toLowerCase());
-        sb.append("'>");
-        sb.append("\n\t\t<h1><a href=\"javascript:animatedcollapse.toggle('");
-        sb.append(C.getURLSafeName());
-        sb.append("\')\">");
-        sb.append(C.getCourseCode());
-        sb.append(" - ");
-        sb.append(C.getName());
-        sb.append("</a></h1>");
-        sb.append("\n\t</div>");
+        W.append("\n\t<div class='title ");
+        W.append(status.toString().toLowerCase());
+        W.append("'>");
+        W.append("\n\t\t<h1><a href=\"javascript:animatedcollapse.toggle('");
+        W.append(C.getURLSafeName());
+        W.append("\')\">");
+        W.append(C.getCourseCode());
+        W.append(" - ");
+        W.append(C.getName());
+        W.append("</a></h1>");
+        W.append("\n\t</div>");
         // toggle wrapper
-        sb.append("\n\t<div id='");
-        sb.append(C.getURLSafeName());
-        sb.append("' style='display:none;'>");
+        W.append("\n\t<div id='");
+        W.append(C.getURLSafeName());
+        W.append("' style='display:none;'>");
         // description and metadata files
-        sb.append("\n\t\t<div class='metadata'>");
-        sb.append("\n\t\t\t<ul class='marked'>");
+        W.append("\n\t\t<div class='metadata'>");
+        W.append("\n\t\t\t<ul class='marked'>");
         if (C.hasMetadataFile()) {
-            sb.append("\n\t\t\t\t<li class='checked'>Has course description file (");
+            W.append("\n\t\t\t\t<li class='checked'>Has course description file (");
         } else {
-            sb.append("\n\t\t\t\t<li class='crossed'>Does not have course description file (");
+            W.append("\n\t\t\t\t<li class='crossed'>Does not have course description file (");
         }
-        sb.append(Config.COURSE_METADATA_FILE);
-        sb.append(")</li>");
+        W.append(Config.COURSE_METADATA_FILE);
+        W.append(")</li>");
         if (C.hasSyllabusFile()) {
-            sb.append("\n\t\t\t\t<li class='checked'>Has course handout PDF (");
+            W.append("\n\t\t\t\t<li class='checked'>Has course handout PDF (");
         } else {
-            sb.append("\n\t\t\t\t<li class='crossed'>Does not have course handout PDF (");
+            W.append("\n\t\t\t\t<li class='crossed'>Does not have course handout PDF (");
         }
-        sb.append(Config.COURSE_SYLLABUS_FILE);
-        sb.append(")</li>");
+        W.append(Config.COURSE_SYLLABUS_FILE);
+        W.append(")</li>");
         if (!C.hasAssignments()) {
-            sb.append("\n\t\t\t\t<li class='crossed'>Does not have assignment folders.</li>");
+            W.append("\n\t\t\t\t<li class='crossed'>Does not have assignment folders.</li>");
         }
-        sb.append("\n\t\t\t</ul>");
-        sb.append("\n\t\t</div>");
+        W.append("\n\t\t\t</ul>");
+        W.append("\n\t\t</div>");
         // assignment reports
         List<Assignment> assignments = C.getAssignments();
         Iterator<Assignment> ita = assignments.iterator();
         while (ita.hasNext()) {
             Assignment a = ita.next();
-            sb.append(AssignmentReport.GetHTML(a));
+            AssignmentReport.Write(a,W);
         } 
         // end
-        sb.append("\n\t</div>");
-        sb.append("\n</div><!-- /course -->");
-        return sb.toString();
+        W.append("\n\t</div>");
+        W.append("\n</div><!-- /course -->");
     }
     
 } // end class
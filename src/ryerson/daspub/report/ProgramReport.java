@@ -18,6 +18,9 @@
  */
 package ryerson.daspub.report;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Iterator;
 import java.util.logging.Logger;
 import ryerson.daspub.model.Course;
@@ -36,24 +39,48 @@ public class ProgramReport {
     /**
      * Get status report.
      * @param P Program
-     * @return 
+     * @return HTML status report
      */
     public static String GetHTML(Program P) {
-        StringBuilder sb = new StringBuilder();
+        StringWriter writer = new StringWriter();
+        try {
+            Write(P,writer);
+        } catch (IOException ex) {
+            // a string writer does not throw
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Write status report.
+     * @param P Program
+     * @param W Writer
+     * @throws IOException
+     */
+    public static void Write(Program P, Writer W) throws IOException {
+        Write(P,W,null);
+    }
+
+    /**
+     * Write status report and add each course to the status counter.
+     * @param P Program
+     * @param W Writer
+     * @param Counter Status counter or null
+     * @throws IOException
+     */
+    public static void Write(Program P, Writer W, StatusCounter Counter) throws IOException {
         // program block header
-        sb.append("\n\n<div class='program'>");
-        sb.append("\n<h1>");
-        sb.append(P.getName());
-        sb.append("</h1>");
+        W.append("\n\n<div class='program'>");
+        W.append("\n<h1>");
+        W.append(P.getName());
+        W.append("</h1>");
         //  process courses
         Iterator<Course> courses = P.getCourses();
         while (courses.hasNext()) {
             Course course = courses.next();
-            sb.append(CourseReport.GetHTML(course));
+            CourseReport.Write(course,W,Counter);
         }
-        sb.append("</div>");
-        // return result
-        return sb.toString();
+        W.append("</div>");
     }
     
 } // end class
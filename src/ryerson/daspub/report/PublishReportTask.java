@@ -19,21 +19,40 @@
 
 package ryerson.daspub.report;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.InputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import ryerson.daspub.model.Archive;
+import ryerson.daspub.model.ArchiveSnapshot;
 import ryerson.daspub.Config;
+import ryerson.daspub.model.Assignment;
+import ryerson.daspub.model.Course;
+import ryerson.daspub.model.Program;
 import ryerson.daspub.model.Submission;
+import ryerson.daspub.utility.ArchiveCatalog;
+import ryerson.daspub.utility.BuildManifest;
+import ryerson.daspub.utility.HashUtils;
+import ryerson.daspub.utility.Template;
+import ryerson.daspub.utility.TemplateRegistry;
 
 /**
  * Writes HTML status report for a content archive.
@@ -46,6 +65,7 @@ public class PublishReportTask implements Runnable {
                                            "styles.css"};
 
     private Config config;
+    private ArchiveSnapshot snapshot;
     private File output;
     
     private static final Logger logger = Logger.getLogger(PublishReportTask.class.getName());
@@ -57,12 +77,58 @@ public class PublishReportTask implements Runnable {
      * @param Configuration Configuration
      */
     public PublishReportTask(Config Configuration) {
+        this(Configuration,new ArchiveSnapshot(Config.ARCHIVE_PATHS));
+    }
+
+    /**
+     * Report publisher 
+     * @param Configuration Configuration
+     * @param Snapshot Archive snapshot
+     */
+    public PublishReportTask(Config Configuration, ArchiveSnapshot Snapshot) {
         config = Configuration;
+        snapshot = Snapshot;
         output = new File(Config.OUTPUT_REPORT_PATH);
     }
 
     //--------------------------------------------------------------------------
 
+    /**
+     * Get the archive files that the report is derived from: course,
+     * assignment and submission metadata files, handouts and submission
+     * source files.
+     * @return List of files
+     */
+    private List<File> getInputs() {
+        List<File> files = new ArrayList<File>();
+        Iterator<Archive> ita = snapshot.getArchives().iterator();
+        while (ita.hasNext()) {
+            Iterator<Program> itp = ita.next().getPrograms();
+            while (itp.hasNext()) {
+                Iterator<Course> itc = itp.next().getCourses();
+                while (itc.hasNext()) {
+                    Course course = itc.next();
+                    files.add(course.getFolder());
+                    files.add(new File(course.getFolder(),Config.COURSE_METADATA_FILE));
+                    files.add(new File(course.getFolder(),Config.COURSE_SYLLABUS_FILE));
+                    Iterator<Assignment> itas = course.getAssignments().iterator();
+                    while (itas.hasNext()) {
+                        Assignment assignment = itas.next();
+                        files.add(assignment.getFolder());
+                        files.add(new File(assignment.getFolder(),Config.ASSIGNMENT_METADATA_FILE));
+                        files.add(new File(assignment.getFolder(),Config.ASSIGNMENT_SYLLABUS_FILE));
+                        files.add(new File(assignment.getFolder(),Config.SUBMISSION_METADATA_FILE));
+                        Iterator<Submission> its = assignment.getSubmissions().iterator();
+                        while (its.hasNext()) {
+                            files.add(its.next().getSourceFile());
+                        }
+                    }
+                }
+            }
+        }
+        return files;
+    }
+
     /**
      * Run task.
      */
@@ -74,88 +140,114 @@ public class PublishReportTask implements Runnable {
             output.delete();
         }
         output.mkdirs();
-        // get report content
-        StringBuilder content = new StringBuilder();
-        List<Archive> archives = Archive.getArchives(Config.ARCHIVE_PATHS);
-        Iterator<Archive> it = archives.iterator();
-        while (it.hasNext()) {
-            Archive archive = it.next();
-            content.append(ArchiveReport.GetHTML(archive));
+        // skip the report if no archive file has changed since it was written
+        BuildManifest manifest = new BuildManifest(new File(output,Config.BUILD_MANIFEST_FILE),Config.INCREMENTAL_PUBLISH);
+        manifest.setScope(snapshot.getScope());
+        manifest.load();
+        List<File> inputs = getInputs();
+        String values = HashUtils.md5(Config.ARCHIVE_PATHS);
+        if (manifest.isCurrent(htmlFileName, inputs, values)) {
+            logger.log(Level.INFO,"Report is up to date");
+            logger.log(Level.INFO,"DONE publish report task");
+            return;
         }
-        // get total number of complete, partial and incomplete items
-        StatusCounter sc = new StatusCounter(Config.ARCHIVE_PATHS);
-        sc.count();
-        int complete = sc.getCompleteCourseCount();
-        int partial = sc.getPartialCourseCount();
-        int error = sc.getErrorCourseCount();
-        int incomplete = sc.getIncompleteCourseCount();
-        int total = sc.getTotalCourseCount();
-        int percent = sc.getPercentageComplete();
-        // get list of duplicate submissions
-        List<Submission> duplicates = sc.getDuplicates();
         // place report data into html template, write output file
-        String data = "";
-        File file = null;
+        File file = new File(output,htmlFileName);
+        final File spool = new File(output,htmlFileName + ".part");
+        Map<String,String> fields = new HashMap<String,String>();
+        Map<String,Template.Section> sections = new HashMap<String,Template.Section>();
         try {
+            // build the archive reports and tally the course states in one
+            // pass. the report HTML is spooled to disk because the totals
+            // precede it in the page
+            ReportSummary summary;
+            Writer writer = new BufferedWriter(new FileWriter(spool));
+            try {
+                summary = new ReportEngine(snapshot).write(writer);
+            } finally {
+                writer.close();
+            }
+            final List<Submission> duplicates = summary.getDuplicates();
             // write html
-            file = new File(output,htmlFileName);
-            InputStream is = PublishReportTask.class.getResourceAsStream(htmlFileName);
-            data = IOUtils.toString(is);
+            Template template = TemplateRegistry.getInstance().getResource(PublishReportTask.class,htmlFileName);
             DateFormat dateFormat = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
             Date date = new Date();
             String title = "Status Report - Generated " + dateFormat.format(date);
             
-            data = data.replace("${title}", title);
-            data = data.replace("${timestamp}", dateFormat.format(date));
+            fields.put("title", title);
+            fields.put("timestamp", dateFormat.format(date));
 
-            data = data.replace("${total.complete}", String.valueOf(complete));
-            data = data.replace("${total.partial}", String.valueOf(partial));
-            data = data.replace("${total.error}", String.valueOf(error));
-            data = data.replace("${total.incomplete}", String.valueOf(incomplete));
-            data = data.replace("${percent.complete}", String.valueOf(percent));
-            data = data.replace("${total}", String.valueOf(total));
+            fields.put("total.complete", String.valueOf(summary.getCompleteCourseCount()));
+            fields.put("total.partial", String.valueOf(summary.getPartialCourseCount()));
+            fields.put("total.error", String.valueOf(summary.getErrorCourseCount()));
+            fields.put("total.incomplete", String.valueOf(summary.getIncompleteCourseCount()));
+            fields.put("percent.complete", String.valueOf(summary.getPercentageComplete()));
+            fields.put("total", String.valueOf(summary.getTotalCourseCount()));
             
-            data = data.replace("${content}", content.toString());
-
-            if (duplicates.size() > 0) {
-                StringBuilder sb2 = new StringBuilder();
-                sb2.append("There are ");
-                sb2.append(String.valueOf(duplicates.size()));
-                sb2.append(" duplicate submission ids.");
-                sb2.append("<table width='100%'>");
-                Iterator<Submission> its = duplicates.iterator();
-                while (its.hasNext()) {
-                    Submission s = its.next();
-                    sb2.append("<tr><td>");
-                    sb2.append(s.getId());
-                    sb2.append("</td><td>in</td><td>");
-                    sb2.append(s.getSourceFile().getParent());
-                    sb2.append("</td></tr>");
+            // archive reports and duplicates are written directly to the
+            // report file as the page is rendered
+            sections.put("content", new Template.Section() {
+                public void write(Writer W) throws IOException {
+                    Reader reader = new BufferedReader(new FileReader(spool));
+                    try {
+                        IOUtils.copy(reader,W);
+                    } finally {
+                        reader.close();
+                    }
                 }
-                sb2.append("</table>");
-                data = data.replace("${duplicates}", sb2.toString());
+            });
+            if (duplicates.size() > 0) {
+                sections.put("duplicates", new Template.Section() {
+                    public void write(Writer W) throws IOException {
+                        W.append("There are ");
+                        W.append(String.valueOf(duplicates.size()));
+                        W.append(" duplicate submission ids.");
+                        W.append("<table width='100%'>");
+                        Iterator<Submission> its = duplicates.iterator();
+                        while (its.hasNext()) {
+                            Submission s = its.next();
+                            W.append("<tr><td>");
+                            W.append(s.getId());
+                            W.append("</td><td>in</td><td>");
+                            W.append(s.getSourceFile().getParent());
+                            W.append("</td></tr>");
+                        }
+                        W.append("</table>");
+                    }
+                });
             } else {
-                // data = data.replace("${duplicates}", "There are 0 duplicated submission IDs.");
-                data = data.replace("${duplicates}", " ");
+                // fields.put("duplicates", "There are 0 duplicated submission IDs.");
+                fields.put("duplicates", " ");
             }
             
             logger.log(Level.INFO,"Writing report file \"{0}\"",file.getAbsolutePath());
-            FileUtils.write(file, data);
+            template.write(fields, sections, file);
             
             // write support files
             // if the file is a binary file, we need to modify this code
             for (int i=0;i<supportFiles.length;i++) {
                 file = new File(output,supportFiles[i]);
-                is = PublishReportTask.class.getResourceAsStream(supportFiles[i]);
-                data = IOUtils.toString(is);
+                template = TemplateRegistry.getInstance().getResource(PublishReportTask.class,supportFiles[i]);
                 logger.log(Level.INFO,"Writing support file \"{0}\"",file.getAbsolutePath());
-                FileUtils.write(file,data);                
+                template.write(Collections.<String,String>emptyMap(),file);
             }
+            // record the report outputs
+            List<File> outputs = new ArrayList<File>();
+            outputs.add(new File(output,htmlFileName));
+            for (int i=0;i<supportFiles.length;i++) {
+                outputs.add(new File(output,supportFiles[i]));
+            }
+            manifest.record(htmlFileName, inputs, outputs, values);
+            manifest.save();
+            // record the spreadsheets that were parsed while writing the report
+            ArchiveCatalog.getInstance().save();
         } catch (Exception ex) {
             String stack = ExceptionUtils.getStackTrace(ex);
             logger.log(Level.SEVERE,"Could not create output file \"{0}\"\n\n{1}",new Object[]{file.getAbsolutePath(),stack});
-            System.exit(-1);
-        }                
+            throw new RuntimeException("Could not create output file " + file.getAbsolutePath(),ex);
+        } finally {
+            FileUtils.deleteQuietly(spool);
+        }
         logger.log(Level.INFO,"DONE publish report task");
     }
 
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2011 Davis Marques
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ */
+package ryerson.daspub.report;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.List;
+import ryerson.daspub.model.Archive;
+import ryerson.daspub.model.ArchiveSnapshot;
+
+/**
+ * Builds the status report in a single pass over the archives. The HTML for
+ * each archive is written while the course states and duplicate submission
+ * IDs are tallied, so the archive model is visited only once. Course states
+ * are evaluated in parallel, ahead of the course being written.
+ * @author dmarques
+ */
+public class ReportEngine {
+
+    private ArchiveSnapshot snapshot;
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * ReportEngine constructor
+     * @param Snapshot Archive snapshot
+     */
+    public ReportEngine(ArchiveSnapshot Snapshot) {
+        snapshot = Snapshot;
+    }
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Write the archive reports and tally the course states.
+     * @param W Writer for the archive report HTML
+     * @return Summary of course states and duplicate submissions
+     * @throws IOException
+     */
+    public ReportSummary write(Writer W) throws IOException {
+        StatusCounter counter = new StatusCounter(snapshot);
+        counter.evaluate();
+        try {
+            List<Archive> archives = snapshot.getArchives();
+            Iterator<Archive> it = archives.iterator();
+            while (it.hasNext()) {
+                ArchiveReport.Write(it.next(),W,counter);
+            }
+        } finally {
+            counter.finish();
+        }
+        return counter.getSummary();
+    }
+
+} // end class
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2011 Davis Marques
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ */
+package ryerson.daspub.report;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import ryerson.daspub.model.Submission;
+
+/**
+ * Immutable summary of the publication states of all courses in the
+ * archive.
+ * @author dmarques
+ */
+public class ReportSummary {
+
+    private int complete;
+    private int partial;
+    private int incomplete;
+    private int error;
+    private int total;
+    private int percentage;
+    private List<Submission> duplicates;
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * ReportSummary constructor
+     * @param Complete Number of complete courses
+     * @param Partial Number of partially complete courses
+     * @param Incomplete Number of incomplete courses
+     * @param Error Number of courses with errors
+     * @param Total Total number of courses
+     * @param Percentage Percentage of complete courses
+     * @param Duplicates Submissions with duplicate IDs
+     */
+    public ReportSummary(int Complete, int Partial, int Incomplete, int Error,
+                         int Total, int Percentage, List<Submission> Duplicates) {
+        complete = Complete;
+        partial = Partial;
+        incomplete = Incomplete;
+        error = Error;
+        total = Total;
+        percentage = Percentage;
+        duplicates = Collections.unmodifiableList(new ArrayList<Submission>(Duplicates));
+    }
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Get the total number of complete courses in the archive.
+     * @return 
+     */
+    public int getCompleteCourseCount() {
+        return complete;
+    }
+
+    /**
+     * Get submission items with duplicate IDs
+     * @return Unmodifiable list of submissions
+     */
+    public List<Submission> getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Get the total number of courses with errors in the archive.
+     * @return 
+     */
+    public int getErrorCourseCount() {
+        return error;
+    }
+
+    /**
+     * Get the total number of incomplete courses in the archive.
+     * @return 
+     */
+    public int getIncompleteCourseCount() {
+        return incomplete;
+    }
+
+    /**
+     * Get the total number of partially complete courses in the archive.
+     * @return 
+     */
+    public int getPartialCourseCount() {
+        return partial;
+    }
+
+    /**
+     * Get total percentage representation of complete courses.
+     * @return 
+     */
+    public int getPercentageComplete() {
+        return percentage;
+    }
+
+    /**
+     * Get the total number of courses in the archive.
+     * @return 
+     */
+    public int getTotalCourseCount() {
+        return total;
+    }
+
+} // end class
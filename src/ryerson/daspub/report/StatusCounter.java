@@ -19,34 +19,52 @@
 package ryerson.daspub.report;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import ryerson.daspub.Config;
 import ryerson.daspub.Config.STATUS;
 import ryerson.daspub.model.Archive;
+import ryerson.daspub.model.ArchiveSnapshot;
 import ryerson.daspub.model.Assignment;
 import ryerson.daspub.model.Course;
 import ryerson.daspub.model.Program;
 import ryerson.daspub.model.Submission;
+import ryerson.daspub.utility.ParallelJobRunner;
 
 /**
  * Creates a cumulative count of publication states for all courses in the 
- * archive.
+ * archive. Courses are evaluated in parallel, ahead of being tallied, and are
+ * tallied in archive order so that the same submission is always reported as
+ * the duplicate. Courses may also be recorded one at a time, from any thread.
  * @author dmarques
  */
 public class StatusCounter {
     
-    private List<String> paths;
+    private ArchiveSnapshot snapshot;
     
-    private int complete;
-    private int partial;
-    private int incomplete;
-    private int error;
-    private int total;
-    private int percentage;
+    private AtomicInteger complete = new AtomicInteger();
+    private AtomicInteger partial = new AtomicInteger();
+    private AtomicInteger incomplete = new AtomicInteger();
+    private AtomicInteger error = new AtomicInteger();
+    private AtomicInteger total = new AtomicInteger();
     
-    private HashMap<String,Submission> unique = new HashMap<String,Submission>();
-    private ArrayList<Submission> duplicates = new ArrayList<Submission>();
+    private ConcurrentHashMap<Course,Future<Evaluation>> evaluations = new ConcurrentHashMap<Course,Future<Evaluation>>();
+    private ParallelJobRunner runner;
+
+    private ConcurrentHashMap<String,Submission> unique = new ConcurrentHashMap<String,Submission>();
+    private List<Submission> duplicates = Collections.synchronizedList(new ArrayList<Submission>());
+
+    private static final Logger logger = Logger.getLogger(StatusCounter.class.getName());
     
     //--------------------------------------------------------------------------
 
@@ -55,47 +73,81 @@ public class StatusCounter {
      * @param Paths
      */
     public StatusCounter(List<String> Paths) {
-        paths = Paths;
+        this(new ArchiveSnapshot(Paths));
+    }
+
+    /**
+     * StatusCounter constructor
+     * @param Snapshot Archive snapshot
+     */
+    public StatusCounter(ArchiveSnapshot Snapshot) {
+        snapshot = Snapshot;
     }
     
     //--------------------------------------------------------------------------
 
     /**
-     * Tabulate values
+     * Tabulate values. Course states and submissions are evaluated in 
+     * parallel, then tallied in archive order.
      */
     public void count() {
-        List<Archive> archives = Archive.getArchives(paths);
-        Iterator<Archive> ita = archives.iterator();
-        while (ita.hasNext()) {
-            Archive a = ita.next();
-            Iterator<Program> ip = a.getPrograms();
-            while (ip.hasNext()) {
-                Program p = ip.next();
-                Iterator<Course> ic = p.getCourses();
-                while (ic.hasNext()) {
-                    Course c = ic.next();
-                    STATUS status = c.getStatus();
-                    if (hasDuplicateSubmissionID(c) || status == STATUS.ERROR) {
-                        status = STATUS.ERROR;
-                    } else if (status == STATUS.COMPLETE) {
-                        complete++;                        
-                    } else if (status == STATUS.INCOMPLETE) {
-                        incomplete++;
-                    } else if (status == STATUS.PARTIAL) {
-                        partial++;
-                    }
-                    total++;                    
-                }
+        evaluate();
+        try {
+            Iterator<Course> it = getCourses().iterator();
+            while (it.hasNext()) {
+                record(it.next());
             }
+        } finally {
+            finish();
         }
     }
-    
+
+    /**
+     * Start evaluating the status and submissions of every course in the
+     * archive, in archive order, on PUBLISH_PARALLELISM threads. A course
+     * that is recorded afterward waits for its own evaluation only, so
+     * courses can be recorded in archive order while later courses are still
+     * being evaluated. Call finish once all courses have been recorded.
+     */
+    public void evaluate() {
+        runner = new ParallelJobRunner(Config.PUBLISH_PARALLELISM);
+        Iterator<Course> it = getCourses().iterator();
+        while (it.hasNext()) {
+            final Course course = it.next();
+            FutureTask<Evaluation> task = new FutureTask<Evaluation>(new Callable<Evaluation>() {
+                @Override
+                public Evaluation call() throws Exception {
+                    return new Evaluation(course.getStatus(),getSubmissions(course));
+                }
+            });
+            evaluations.put(course,task);
+            runner.submit(course.getFolder().getAbsolutePath(),Executors.callable(task));
+        }
+    }
+
+    /**
+     * Wait for outstanding evaluations and release the evaluation threads.
+     */
+    public void finish() {
+        if (runner == null) {
+            return;
+        }
+        try {
+            runner.awaitCompletion();
+        } catch (InterruptedException ex) {
+            logger.log(Level.SEVERE,"Interrupted while evaluating course status");
+            Thread.currentThread().interrupt();
+        }
+        runner = null;
+        evaluations.clear();
+    }
+
     /**
      * Get the total number of complete courses in the archive.
      * @return 
      */
     public int getCompleteCourseCount() {
-        return complete;
+        return complete.get();
     }
     
     /**
@@ -103,7 +155,9 @@ public class StatusCounter {
      * @return 
      */
     public List<Submission> getDuplicates() {
-        return duplicates;
+        synchronized (duplicates) {
+            return new ArrayList<Submission>(duplicates);
+        }
     }
     
     /**
@@ -111,7 +165,7 @@ public class StatusCounter {
      * @return 
      */
     public int getErrorCourseCount() {
-        return error;
+        return error.get();
     }
     
     /**
@@ -119,7 +173,7 @@ public class StatusCounter {
      * @return 
      */
     public int getIncompleteCourseCount() {
-        return incomplete;
+        return incomplete.get();
     }
     
     /**
@@ -127,7 +181,7 @@ public class StatusCounter {
      * @return 
      */
     public int getPartialCourseCount() {
-        return partial;
+        return partial.get();
     }
 
     /**
@@ -136,43 +190,144 @@ public class StatusCounter {
      * @return 
      */
     public int getPercentageComplete() {
-        if (total > 0) {
-            return complete + (partial / 2) / getTotalCourseCount();
+        int count = total.get();
+        if (count > 0) {
+            return complete.get() + (partial.get() / 2) / count;
         }
         return 0;
     }
+
+    /**
+     * Get the courses of all archives, in archive order.
+     * @return Courses
+     */
+    private List<Course> getCourses() {
+        List<Course> courses = new ArrayList<Course>();
+        List<Archive> archives = snapshot.getArchives();
+        Iterator<Archive> ita = archives.iterator();
+        while (ita.hasNext()) {
+            Archive a = ita.next();
+            Iterator<Program> ip = a.getPrograms();
+            while (ip.hasNext()) {
+                Program p = ip.next();
+                Iterator<Course> ic = p.getCourses();
+                while (ic.hasNext()) {
+                    courses.add(ic.next());
+                }
+            }
+        }
+        return courses;
+    }
+
+    /**
+     * Get the submissions of all assignments in a course.
+     * @param C Course
+     * @return Submissions
+     */
+    private static List<Submission> getSubmissions(Course C) {
+        List<Submission> items = new ArrayList<Submission>();
+        List<Assignment> assignments = C.getAssignments();
+        Iterator<Assignment> ita = assignments.iterator();
+        while (ita.hasNext()) {
+            items.addAll(ita.next().getSubmissions());
+        }
+        return items;
+    }
     
+    /**
+     * Get the tabulated values.
+     * @return Summary of the values counted so far
+     */
+    public ReportSummary getSummary() {
+        return new ReportSummary(getCompleteCourseCount(),
+                                 getPartialCourseCount(),
+                                 getIncompleteCourseCount(),
+                                 getErrorCourseCount(),
+                                 getTotalCourseCount(),
+                                 getPercentageComplete(),
+                                 getDuplicates());
+    }
+
     /**
      * Get the total number of courses in the archive.
      * @return 
      */
     public int getTotalCourseCount() {
-        return total;
+        return total.get();
     }
     
     /**
-     * Determine if the course has a submission ID used elsewhere.
-     * @return True if the course has submission IDs that are duplicated elsewhere, false otherwise.
+     * Add a course to the tally.
+     * @param C Course
+     * @return Course status
      */
-    private boolean hasDuplicateSubmissionID(Course C) {
+    public STATUS record(Course C) {
+        Future<Evaluation> evaluation = evaluations.remove(C);
+        if (evaluation != null) {
+            try {
+                Evaluation e = evaluation.get();
+                tally(e.status,e.submissions);
+                return e.status;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ex) {
+                logger.log(Level.FINE,"Could not evaluate course {0}, evaluating again",C.getFolder().getAbsolutePath());
+            }
+        }
+        STATUS status = C.getStatus();
+        tally(status,getSubmissions(C));
+        return status;
+    }
+
+    /**
+     * Add a course to the tally. A submission whose ID has already been 
+     * seen is recorded as a duplicate.
+     * @param Status Course status
+     * @param Submissions Course submissions
+     */
+    private void tally(STATUS Status, List<Submission> Submissions) {
         boolean hasduplicates = false;
-        List<Assignment> assignments = C.getAssignments();
-        Iterator<Assignment> ita = assignments.iterator();
-        while (ita.hasNext()) {
-            Assignment a = ita.next();
-            List<Submission> ls = a.getSubmissions();
-            Iterator<Submission> its = ls.iterator();
-            while (its.hasNext()) {
-                Submission s = its.next();
-                if (!unique.containsKey(s.getId())) {
-                    unique.put(s.getId(), s);
-                } else {
-                    duplicates.add(s);
-                    hasduplicates = true;
-                }
+        Iterator<Submission> its = Submissions.iterator();
+        while (its.hasNext()) {
+            Submission s = its.next();
+            String id = s.getId() == null ? "" : s.getId();
+            if (unique.putIfAbsent(id,s) != null) {
+                duplicates.add(s);
+                hasduplicates = true;
             }
         }
-        return hasduplicates;
+        if (hasduplicates || Status == STATUS.ERROR) {
+            // courses with errors are not tallied
+        } else if (Status == STATUS.COMPLETE) {
+            complete.incrementAndGet();
+        } else if (Status == STATUS.INCOMPLETE) {
+            incomplete.incrementAndGet();
+        } else if (Status == STATUS.PARTIAL) {
+            partial.incrementAndGet();
+        }
+        total.incrementAndGet();
     }
     
+    //--------------------------------------------------------------------------
+
+    /**
+     * Evaluated course status and submissions.
+     */
+    private static class Evaluation {
+
+        private STATUS status;
+        private List<Submission> submissions;
+
+        /**
+         * Evaluation constructor
+         * @param Status Course status
+         * @param Submissions Course submissions
+         */
+        Evaluation(STATUS Status, List<Submission> Submissions) {
+            status = Status;
+            submissions = Submissions;
+        }
+
+    } // end class
+
 } // end class
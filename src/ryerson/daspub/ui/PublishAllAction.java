@@ -20,19 +20,12 @@ package ryerson.daspub.ui;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
-import java.io.File;
-import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.AbstractAction;
 import ryerson.daspub.Config;
 import ryerson.daspub.Main;
-import ryerson.daspub.artifact.PublishArtifactPagesTask;
-import ryerson.daspub.artifact.PublishQRTagSheetTask;
-import ryerson.daspub.mobile.PublishMobilePresentationTask;
-import ryerson.daspub.report.PublishReportTask;
-import ryerson.daspub.slideshow.PublishSlideshowTask;
-import ryerson.daspub.utility.CopyFilesTask;
+import ryerson.daspub.utility.TaskScheduler;
 
 /**
  * Publish all content action.
@@ -68,42 +61,9 @@ public class PublishAllAction extends AbstractAction {
         // get the configuration info
         ApplicationJFrame frame = ApplicationJFrame.getInstance();
         Config config = frame.getConfiguration();
-
-        // create copy static files tasks
-        File artifactinput = new File(Config.STATIC_ARTIFACT_CONTENT);
-        File artifactoutput = new File(Config.OUTPUT_ARTIFACT_PAGES_PATH);
-        File mobileinput = new File(Config.STATIC_MOBILE_CONTENT);
-        File mobileoutput = new File(Config.OUTPUT_MOBILE_WORK_PATH);
-        File reportinput = new File(Config.STATIC_REPORT_CONTENT);
-        File reportoutput = new File(Config.OUTPUT_REPORT_PATH);
-        File slideinput = new File(Config.STATIC_SLIDESHOW_CONTENT);
-        File slideoutput = new File(Config.OUTPUT_SLIDESHOW_PATH);
-        
-        CopyFilesTask copyArtifactFilesTask = new CopyFilesTask(artifactinput,artifactoutput);
-        CopyFilesTask copyMobileFilesTask = new CopyFilesTask(mobileinput,mobileoutput);
-        CopyFilesTask copyReportFilesTask = new CopyFilesTask(reportinput,reportoutput);
-        CopyFilesTask copySlideshowFilesTask = new CopyFilesTask(slideinput,slideoutput);
-
-        // create content generation tasks
-        PublishArtifactPagesTask makeArtifactPagesTask = new PublishArtifactPagesTask(config);
-        PublishMobilePresentationTask makeMobileTask = new PublishMobilePresentationTask(config);
-        PublishQRTagSheetTask makeQRTagSheetTask = new PublishQRTagSheetTask(config);
-        PublishReportTask makeReportTask = new PublishReportTask(config);
-        PublishSlideshowTask makeSlideshowTask = new PublishSlideshowTask(config);
-
-        // execute tasks in parallel
-        ExecutorService pool = Main.getThreadPool();
-        
-        pool.execute(copyArtifactFilesTask);
-        pool.execute(copyMobileFilesTask);
-        pool.execute(copyReportFilesTask);
-        pool.execute(copySlideshowFilesTask);
-        
-        pool.execute(makeArtifactPagesTask);
-        pool.execute(makeMobileTask);
-        pool.execute(makeQRTagSheetTask);
-        pool.execute(makeReportTask);
-        pool.execute(makeSlideshowTask);
+        // run copy and content generation tasks in dependency order
+        TaskScheduler scheduler = Main.getPublishAllScheduler(config);
+        scheduler.start();
     }
 
 } // end class
@@ -0,0 +1,484 @@
+/*
+ * Copyright (c) 2011 Davis Marques
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ */
+package ryerson.daspub.utility;
+
+import com.google.gson.Gson;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import ryerson.daspub.Config;
+import ryerson.daspub.model.Submission;
+
+/**
+ * Persistent catalog of the archive. Records the listing of each archive
+ * folder, the submissions parsed from each spreadsheet and the values parsed
+ * from each metadata file, so that a later run can rebuild the archive model
+ * without reading them again. A folder is listed again only when its last
+ * modified time has changed. Spreadsheets and metadata files are checked by
+ * fingerprint, because editing a file in place does not change the last
+ * modified time of its folder.
+ * @author dmarques
+ */
+public class ArchiveCatalog {
+
+    private static final int VERSION = 1;
+    private static final long TIMESTAMP_RESOLUTION = 2000L;
+
+    private static ArchiveCatalog instance;
+
+    private File file;
+    private ConcurrentHashMap<String,FolderRecord> folders = new ConcurrentHashMap<String,FolderRecord>();
+    private ConcurrentHashMap<String,SpreadsheetRecord> spreadsheets = new ConcurrentHashMap<String,SpreadsheetRecord>();
+    private ConcurrentHashMap<String,MetadataRecord> metadata = new ConcurrentHashMap<String,MetadataRecord>();
+
+    private static final Logger logger = Logger.getLogger(ArchiveCatalog.class.getName());
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * ArchiveCatalog constructor
+     * @param F Catalog file. If null, the catalog is disabled.
+     */
+    public ArchiveCatalog(File F) {
+        file = F;
+        if (file != null) {
+            load();
+        }
+    }
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Get singleton instance. The catalog is loaded from CATALOG_PATH when
+     * the instance is first requested.
+     * @return Catalog
+     */
+    public static synchronized ArchiveCatalog getInstance() {
+        if (instance == null) {
+            String path = Config.CATALOG_PATH;
+            if (path == null || path.trim().equals("")) {
+                instance = new ArchiveCatalog(null);
+            } else {
+                instance = new ArchiveCatalog(new File(path));
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Get the submissions recorded for a spreadsheet.
+     * @param Fingerprint Spreadsheet fingerprint
+     * @return Submissions or null if the catalog does not hold submissions 
+     * for this version of the spreadsheet.
+     */
+    public List<Submission> getSubmissions(FileFingerprint Fingerprint) {
+        if (file == null) {
+            return null;
+        }
+        SpreadsheetRecord record = spreadsheets.get(Fingerprint.getPath());
+        if (record == null || !record.fingerprint.equals(Fingerprint)) {
+            return null;
+        }
+        List<Submission> items = new ArrayList<Submission>(record.submissions.size());
+        Iterator<SubmissionRecord> it = record.submissions.iterator();
+        while (it.hasNext()) {
+            items.add(it.next().toSubmission());
+        }
+        return items;
+    }
+
+    /**
+     * Remove a file or folder from the catalog.
+     * @param F File
+     */
+    public void invalidate(File F) {
+        String path = F.getAbsolutePath();
+        folders.remove(path);
+        spreadsheets.remove(path);
+        metadata.remove(path);
+    }
+
+    /**
+     * List a folder. If the folder has not changed since it was recorded,
+     * its entries are taken from the catalog and recorded in the
+     * FileAttributeIndex without reading the folder. Otherwise, the folder is
+     * listed and its record updated.
+     * @param Folder Folder
+     * @return Folder entries. Empty if the folder does not exist.
+     */
+    public List<File> list(File Folder) {
+        FileAttributeIndex index = FileAttributeIndex.getInstance();
+        if (file == null) {
+            return index.list(Folder);
+        }
+        String path = Folder.getAbsolutePath();
+        long modified = Folder.lastModified();
+        FolderRecord record = folders.get(path);
+        if (record != null && modified != 0L && record.isCurrent(modified)) {
+            Map<File,FileAttributeIndex.Attributes> items = new LinkedHashMap<File,FileAttributeIndex.Attributes>();
+            Iterator<EntryRecord> it = record.entries.iterator();
+            while (it.hasNext()) {
+                EntryRecord entry = it.next();
+                File f = new File(Folder,entry.name);
+                if (isTracked(f)) {
+                    // derived data is checked against the file itself
+                    items.put(f,FileAttributeIndex.read(f));
+                } else {
+                    items.put(f,new FileAttributeIndex.Attributes(true,entry.directory,entry.length,entry.lastModified));
+                }
+            }
+            return index.put(Folder,items);
+        }
+        List<File> listing = index.list(Folder);
+        if (modified == 0L) {
+            folders.remove(path);
+            return listing;
+        }
+        List<EntryRecord> entries = new ArrayList<EntryRecord>(listing.size());
+        Iterator<File> it = listing.iterator();
+        while (it.hasNext()) {
+            File f = it.next();
+            FileAttributeIndex.Attributes attributes = index.get(f);
+            entries.add(new EntryRecord(f.getName(),attributes));
+        }
+        folders.put(path,new FolderRecord(modified,System.currentTimeMillis(),entries));
+        return listing;
+    }
+
+    /**
+     * Determine if the catalog holds data derived from the file.
+     * @param F File
+     * @return True if the file is a recorded spreadsheet or metadata file.
+     */
+    private boolean isTracked(File F) {
+        String path = F.getAbsolutePath();
+        return spreadsheets.containsKey(path) || metadata.containsKey(path);
+    }
+
+    /**
+     * Load the catalog file. If the file does not exist or can not be read,
+     * the catalog starts empty.
+     */
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            String json = FileUtils.readFileToString(file,"UTF-8");
+            Contents contents = new Gson().fromJson(json,Contents.class);
+            if (contents == null || contents.version != VERSION) {
+                return;
+            }
+            if (contents.folders != null) {
+                folders.putAll(contents.folders);
+            }
+            if (contents.spreadsheets != null) {
+                spreadsheets.putAll(contents.spreadsheets);
+            }
+            if (contents.metadata != null) {
+                metadata.putAll(contents.metadata);
+            }
+            logger.log(Level.INFO,"Loaded archive catalog \"{0}\" in {1} ms",
+                    new Object[]{file.getAbsolutePath(),System.currentTimeMillis() - start});
+        } catch (Exception ex) {
+            String stack = ExceptionUtils.getStackTrace(ex);
+            logger.log(Level.WARNING,"Could not load archive catalog \"{0}\"\n\n{1}",
+                    new Object[]{file.getAbsolutePath(),stack});
+        }
+    }
+
+    /**
+     * Parse a metadata file. If the catalog holds values for the current
+     * version of the file, the file is not read.
+     * @param F Metadata file
+     * @return Map of metadata values
+     */
+    public Map<String,String> parse(File F) {
+        if (file == null) {
+            return MarkupUtils.parse(F);
+        }
+        FileFingerprint fingerprint = FileAttributeIndex.getInstance().getFingerprint(F);
+        MetadataRecord record = metadata.get(fingerprint.getPath());
+        if (record != null && record.fingerprint.equals(fingerprint)) {
+            return new HashMap<String,String>(record.values);
+        }
+        Map<String,String> values = MarkupUtils.parse(F);
+        metadata.put(fingerprint.getPath(),new MetadataRecord(fingerprint,values));
+        return values;
+    }
+
+    /**
+     * Record the submissions parsed from a spreadsheet.
+     * @param Fingerprint Spreadsheet fingerprint
+     * @param Submissions Submissions
+     */
+    public void putSubmissions(FileFingerprint Fingerprint, List<Submission> Submissions) {
+        if (file == null) {
+            return;
+        }
+        List<SubmissionRecord> records = new ArrayList<SubmissionRecord>(Submissions.size());
+        Iterator<Submission> it = Submissions.iterator();
+        while (it.hasNext()) {
+            records.add(new SubmissionRecord(it.next()));
+        }
+        spreadsheets.put(Fingerprint.getPath(),new SpreadsheetRecord(Fingerprint,records));
+    }
+
+    /**
+     * Save the catalog file. Publishing tasks that run at the same time may
+     * each save the catalog, so saves are serialized.
+     */
+    public synchronized void save() {
+        if (file == null) {
+            return;
+        }
+        Contents contents = new Contents();
+        contents.version = VERSION;
+        contents.folders = new HashMap<String,FolderRecord>(folders);
+        contents.spreadsheets = new HashMap<String,SpreadsheetRecord>(spreadsheets);
+        contents.metadata = new HashMap<String,MetadataRecord>(metadata);
+        try {
+            String json = new Gson().toJson(contents);
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null) {
+                parent.mkdirs();
+            }
+            File temp = new File(file.getAbsolutePath() + ".part");
+            FileUtils.writeStringToFile(temp,json,"UTF-8");
+            if (file.exists() && !file.delete()) {
+                throw new IOException("Could not replace " + file.getAbsolutePath());
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("Could not rename " + temp.getAbsolutePath());
+            }
+            logger.log(Level.FINE,"Wrote archive catalog \"{0}\"",file.getAbsolutePath());
+        } catch (IOException ex) {
+            String stack = ExceptionUtils.getStackTrace(ex);
+            logger.log(Level.WARNING,"Could not write archive catalog \"{0}\"\n\n{1}",
+                    new Object[]{file.getAbsolutePath(),stack});
+        }
+    }
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Catalog file contents.
+     */
+    private static class Contents {
+
+        private int version;
+        private HashMap<String,FolderRecord> folders;
+        private HashMap<String,SpreadsheetRecord> spreadsheets;
+        private HashMap<String,MetadataRecord> metadata;
+
+    } // end class
+
+    /**
+     * Folder entry record.
+     */
+    private static class EntryRecord {
+
+        private String name;
+        private boolean directory;
+        private long length;
+        private long lastModified;
+
+        /**
+         * EntryRecord constructor. Required for deserialization.
+         */
+        private EntryRecord() {
+        }
+
+        /**
+         * EntryRecord constructor
+         * @param Name File name
+         * @param Attributes File attributes
+         */
+        EntryRecord(String Name, FileAttributeIndex.Attributes Attributes) {
+            name = Name;
+            directory = Attributes.isDirectory();
+            length = Attributes.getLength();
+            lastModified = Attributes.getLastModified();
+        }
+
+    } // end class
+
+    /**
+     * Folder listing record.
+     */
+    private static class FolderRecord {
+
+        private long modified;
+        private long listed;
+        private List<EntryRecord> entries;
+
+        /**
+         * FolderRecord constructor. Required for deserialization.
+         */
+        private FolderRecord() {
+        }
+
+        /**
+         * FolderRecord constructor
+         * @param Modified Folder last modified time
+         * @param Listed Time the folder was listed
+         * @param Entries Folder entries
+         */
+        FolderRecord(long Modified, long Listed, List<EntryRecord> Entries) {
+            modified = Modified;
+            listed = Listed;
+            entries = Entries;
+        }
+
+        /**
+         * Determine if the record is current. A folder listed within the
+         * file system timestamp resolution of its last change may have
+         * changed again without a new timestamp, so its record is not trusted.
+         * @param Modified Folder last modified time
+         * @return True if the record is current, false otherwise.
+         */
+        boolean isCurrent(long Modified) {
+            return entries != null && modified == Modified
+                    && listed - modified > TIMESTAMP_RESOLUTION;
+        }
+
+    } // end class
+
+    /**
+     * Metadata file record.
+     */
+    private static class MetadataRecord {
+
+        private FileFingerprint fingerprint;
+        private HashMap<String,String> values;
+
+        /**
+         * MetadataRecord constructor. Required for deserialization.
+         */
+        private MetadataRecord() {
+        }
+
+        /**
+         * MetadataRecord constructor
+         * @param Fingerprint File fingerprint
+         * @param Values Metadata values
+         */
+        MetadataRecord(FileFingerprint Fingerprint, Map<String,String> Values) {
+            fingerprint = Fingerprint;
+            values = new HashMap<String,String>(Values);
+        }
+
+    } // end class
+
+    /**
+     * Spreadsheet record.
+     */
+    private static class SpreadsheetRecord {
+
+        private FileFingerprint fingerprint;
+        private List<SubmissionRecord> submissions;
+
+        /**
+         * SpreadsheetRecord constructor. Required for deserialization.
+         */
+        private SpreadsheetRecord() {
+        }
+
+        /**
+         * SpreadsheetRecord constructor
+         * @param Fingerprint Spreadsheet fingerprint
+         * @param Submissions Submission records
+         */
+        SpreadsheetRecord(FileFingerprint Fingerprint, List<SubmissionRecord> Submissions) {
+            fingerprint = Fingerprint;
+            submissions = Submissions;
+        }
+
+    } // end class
+
+    /**
+     * Submission record.
+     */
+    private static class SubmissionRecord {
+
+        private String year;
+        private String semester;
+        private String courseNumber;
+        private String courseName;
+        private String studioMaster;
+        private String instructor;
+        private String assignmentName;
+        private String assignmentDuration;
+        private String studentName;
+        private String numberOfItems;
+        private String id;
+        private String path;
+        private String evaluation;
+
+        /**
+         * SubmissionRecord constructor. Required for deserialization.
+         */
+        private SubmissionRecord() {
+        }
+
+        /**
+         * SubmissionRecord constructor
+         * @param S Submission
+         */
+        SubmissionRecord(Submission S) {
+            year = S.getYear();
+            semester = S.getSemester();
+            courseNumber = S.getCourseNumber();
+            courseName = S.getCourseName();
+            studioMaster = S.getStudioMaster();
+            instructor = S.getInstructor();
+            assignmentName = S.getAssignmentName();
+            assignmentDuration = S.getAssignmentDuration();
+            studentName = S.getStudentName();
+            numberOfItems = S.getNumberOfItems();
+            id = S.getId();
+            path = S.getSourceFile().getAbsolutePath();
+            evaluation = S.getEvaluationString();
+        }
+
+        /**
+         * Create the submission.
+         * @return Submission
+         */
+        Submission toSubmission() {
+            return new Submission(year,semester,courseNumber,courseName,
+                    studioMaster,instructor,assignmentName,assignmentDuration,
+                    studentName,numberOfItems,id,path,evaluation);
+        }
+
+    } // end class
+
+} // end class
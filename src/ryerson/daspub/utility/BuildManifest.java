@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2011 Davis Marques
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ */
+package ryerson.daspub.utility;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+/**
+ * Records the source files and values that each published output was derived
+ * from. In incremental mode, an output whose sources and values are unchanged
+ * since it was last recorded, and whose files still exist, is considered
+ * current and does not need to be built again. The manifest is saved as a
+ * JSON file in the output folder.
+ * @author dmarques
+ */
+public class BuildManifest {
+
+    private File file;
+    private boolean incremental;
+    private HashMap<String,Record> records = new HashMap<String,Record>();
+    private List<String> scope;
+    private int built = 0;
+    private int skipped = 0;
+
+    private static final Type RECORD_MAP_TYPE = new TypeToken<HashMap<String,Record>>(){}.getType();
+
+    private static final Logger logger = Logger.getLogger(BuildManifest.class.getName());
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * BuildManifest constructor
+     * @param F Manifest file
+     * @param Incremental If true, outputs with unchanged inputs are reported
+     * as current. If false, every output is built and recorded.
+     */
+    public BuildManifest(File F, boolean Incremental) {
+        file = F;
+        incremental = Incremental;
+    }
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Get the manifest file.
+     * @return
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Remove an output from the manifest, forcing it to be built again.
+     * @param Key Output key
+     */
+    public synchronized void invalidate(String Key) {
+        records.remove(Key);
+    }
+
+    /**
+     * Determine if an output is current. An output is current if the manifest
+     * is incremental, the output was recorded with the same inputs, the
+     * inputs have not changed since, the values are the same, and the output
+     * files still exist.
+     * @param Key Output key
+     * @param Inputs Files the output is derived from. Files that do not exist
+     * are allowed, so that adding them is detected.
+     * @param Values Digest of the values the output is derived from
+     * @return True if the output is current, false otherwise.
+     */
+    public synchronized boolean isCurrent(String Key, List<File> Inputs, String Values) {
+        if (!incremental) {
+            return false;
+        }
+        Record record = records.get(Key);
+        if (record == null ||
+            !record.values.equals(Values) ||
+            record.inputs.size() != Inputs.size()) {
+            return false;
+        }
+        if (scope != null && !isInScope(record,Inputs)) {
+            skipped++;
+            return true;
+        }
+        for (int i=0;i<Inputs.size();i++) {
+            if (!record.inputs.get(i).equals(new FileFingerprint(Inputs.get(i)))) {
+                return false;
+            }
+        }
+        Iterator<String> it = record.outputs.iterator();
+        while (it.hasNext()) {
+            if (!new File(it.next()).exists()) {
+                return false;
+            }
+        }
+        skipped++;
+        return true;
+    }
+
+    /**
+     * Determine if a recorded output has inputs within the scope. An output
+     * whose inputs have changed paths is treated as within the scope.
+     * @param R Output record
+     * @param Inputs Current inputs
+     * @return True if an input is in a changed folder, false otherwise.
+     */
+    private boolean isInScope(Record R, List<File> Inputs) {
+        for (int i=0;i<Inputs.size();i++) {
+            String path = Inputs.get(i).getAbsolutePath();
+            if (!R.inputs.get(i).getPath().equals(path)) {
+                return true;
+            }
+            Iterator<String> it = scope.iterator();
+            while (it.hasNext()) {
+                String folder = it.next();
+                if (path.equals(folder) || path.startsWith(folder + File.separator)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determine if the manifest is incremental.
+     * @return
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Load the manifest. If the manifest file does not exist, the manifest is
+     * empty.
+     */
+    public synchronized void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            String json = FileUtils.readFileToString(file,"UTF-8");
+            Map<String,Record> items = new Gson().fromJson(json,RECORD_MAP_TYPE);
+            if (items != null) {
+                records.putAll(items);
+            }
+            logger.log(Level.FINE,"Loaded build manifest \"{0}\"",file.getAbsolutePath());
+        } catch (Exception ex) {
+            String stack = ExceptionUtils.getStackTrace(ex);
+            logger.log(Level.WARNING,"Could not load build manifest \"{0}\"\n\n{1}",
+                    new Object[]{file.getAbsolutePath(),stack});
+        }
+    }
+
+    /**
+     * Limit the check of inputs to the folders that changed since the last
+     * publication. An output recorded with the same values and with no
+     * input in these folders is current, without checking its inputs and
+     * output files.
+     * @param Folders Changed folders, or null to check every output.
+     */
+    public synchronized void setScope(List<File> Folders) {
+        if (Folders == null) {
+            scope = null;
+            return;
+        }
+        scope = new ArrayList<String>();
+        Iterator<File> it = Folders.iterator();
+        while (it.hasNext()) {
+            scope.add(it.next().getAbsolutePath());
+        }
+    }
+
+    /**
+     * Record that an output has been built.
+     * @param Key Output key
+     * @param Inputs Files the output is derived from
+     * @param Outputs Files written for the output
+     * @param Values Digest of the values the output is derived from
+     */
+    public synchronized void record(String Key, List<File> Inputs, List<File> Outputs, String Values) {
+        Record record = new Record();
+        Iterator<File> it = Inputs.iterator();
+        while (it.hasNext()) {
+            record.inputs.add(new FileFingerprint(it.next()));
+        }
+        it = Outputs.iterator();
+        while (it.hasNext()) {
+            record.outputs.add(it.next().getAbsolutePath());
+        }
+        record.values = Values;
+        records.put(Key,record);
+        built++;
+    }
+
+    /**
+     * Save the manifest.
+     */
+    public void save() {
+        String json;
+        synchronized (this) {
+            json = new Gson().toJson(records,RECORD_MAP_TYPE);
+            logger.log(Level.INFO,"Built {0} output(s), {1} output(s) were up to date",
+                    new Object[]{built,skipped});
+        }
+        try {
+            FileDeployer.write(file,json,"UTF-8");
+            logger.log(Level.FINE,"Wrote build manifest \"{0}\"",file.getAbsolutePath());
+        } catch (IOException ex) {
+            String stack = ExceptionUtils.getStackTrace(ex);
+            logger.log(Level.WARNING,"Could not write build manifest \"{0}\"\n\n{1}",
+                    new Object[]{file.getAbsolutePath(),stack});
+        }
+    }
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Manifest record for a single output.
+     */
+    private static class Record {
+
+        private List<FileFingerprint> inputs = new ArrayList<FileFingerprint>();
+        private List<String> outputs = new ArrayList<String>();
+        private String values = "";
+
+    } // end class
+
+} // end class
@@ -22,11 +22,11 @@ import java.io.File;
 import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
 /**
- * Utility class to copy files between directories. Can be executed on a thread
+ * Utility class to copy files between directories. Files that are already up
+ * to date in the output directory are skipped. Can be executed on a thread
  * pool.
  * @author dmarques
  */
@@ -52,7 +52,8 @@ public class CopyFilesTask implements Runnable {
     //--------------------------------------------------------------------------
 
     /**
-     * Copy files from input to
+     * Copy files from input to output.
+     * @throws RuntimeException if the files could not be copied
      */
     @Override
     public void run() {
@@ -66,11 +67,14 @@ public class CopyFilesTask implements Runnable {
             try {
                 logger.log(Level.INFO,"Copying files from \"{0}\" to \"{1}\"",
                         new Object[]{input.getAbsolutePath(),output.getAbsolutePath()});
-                FileUtils.copyDirectory(input, output);
+                int count = FileDeployer.getInstance().deployDirectory(input,output);
+                logger.log(Level.INFO,"Copied {0} changed file(s) to \"{1}\"",
+                        new Object[]{count,output.getAbsolutePath()});
             } catch (IOException ex) {
                 String stack = ExceptionUtils.getStackTrace(ex);
                 logger.log(Level.SEVERE,"Could not complete copying files from {0} to {1}\n\n{2}",
                         new Object[]{input.getAbsolutePath(),output.getAbsolutePath(),stack});
+                throw new RuntimeException("Could not copy files from " + input.getAbsolutePath(),ex);
             }
         } else {
             logger.log(Level.SEVERE,"No files were copied because the input directory \"{0}\" does not exist.",
@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2011 Davis Marques
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ */
+package ryerson.daspub.utility;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process wide index of file attributes, collected as folders are listed.
+ * The type, size and modification time of each entry in a listed folder is
+ * read once, and later queries about those files are answered from memory.
+ * A file in a listed folder that is not in the index does not exist. Queries
+ * about files in folders that have not been listed go to the file system
+ * and are not cached. Listing a folder again refreshes its entries.
+ * @author dmarques
+ */
+public class FileAttributeIndex {
+
+    private ConcurrentHashMap<String,Attributes> entries = new ConcurrentHashMap<String,Attributes>();
+    private ConcurrentHashMap<String,List<File>> folders = new ConcurrentHashMap<String,List<File>>();
+
+    private static final Attributes MISSING = new Attributes(false,false,0L,0L);
+
+    private static FileAttributeIndex instance = new FileAttributeIndex();
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * FileAttributeIndex constructor
+     */
+    private FileAttributeIndex() {
+    }
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Remove all entries from the index.
+     */
+    public void clear() {
+        entries.clear();
+        folders.clear();
+    }
+
+    /**
+     * Determine if a file or folder exists.
+     * @param F File
+     * @return True if the file exists, false otherwise.
+     */
+    public boolean exists(File F) {
+        return get(F).exists;
+    }
+
+    /**
+     * Get the attributes of a file.
+     * @param F File
+     * @return Attributes
+     */
+    public Attributes get(File F) {
+        String path = F.getAbsolutePath();
+        Attributes attributes = entries.get(path);
+        if (attributes != null) {
+            return attributes;
+        }
+        File parent = F.getAbsoluteFile().getParentFile();
+        if (parent != null && folders.containsKey(parent.getAbsolutePath())) {
+            return MISSING;
+        }
+        return read(F);
+    }
+
+    /**
+     * Get the fingerprint of a file.
+     * @param F File
+     * @return Fingerprint
+     */
+    public FileFingerprint getFingerprint(File F) {
+        Attributes attributes = get(F);
+        return new FileFingerprint(F.getAbsolutePath(),attributes.length,attributes.lastModified);
+    }
+
+    /**
+     * Get singleton instance.
+     * @return
+     */
+    public static FileAttributeIndex getInstance() {
+        return instance;
+    }
+
+    /**
+     * Remove a file from the index. If the file is a listed folder, its 
+     * listing and entries are removed as well.
+     * @param F File
+     */
+    public void invalidate(File F) {
+        String path = F.getAbsolutePath();
+        entries.remove(path);
+        List<File> listing = folders.remove(path);
+        if (listing != null) {
+            Iterator<File> it = listing.iterator();
+            while (it.hasNext()) {
+                invalidate(it.next());
+            }
+        }
+    }
+
+    /**
+     * Determine if a path is a folder.
+     * @param F File
+     * @return True if the path exists and is a folder, false otherwise.
+     */
+    public boolean isDirectory(File F) {
+        return get(F).directory;
+    }
+
+    /**
+     * Determine if a path is a file.
+     * @param F File
+     * @return True if the path exists and is a file, false otherwise.
+     */
+    public boolean isFile(File F) {
+        Attributes attributes = get(F);
+        return attributes.exists && !attributes.directory;
+    }
+
+    /**
+     * Get the last modified time of a file.
+     * @param F File
+     * @return Last modified time or 0 if the file does not exist.
+     */
+    public long lastModified(File F) {
+        return get(F).lastModified;
+    }
+
+    /**
+     * Get the size of a file.
+     * @param F File
+     * @return Size in bytes or 0 if the file does not exist.
+     */
+    public long length(File F) {
+        return get(F).length;
+    }
+
+    /**
+     * List a folder and record the attributes of its entries.
+     * @param Folder Folder
+     * @return Folder entries. Empty if the folder does not exist.
+     */
+    public List<File> list(File Folder) {
+        File[] files = Folder.listFiles();
+        if (files == null) {
+            invalidate(Folder);
+            return Collections.emptyList();
+        }
+        Map<File,Attributes> items = new LinkedHashMap<File,Attributes>();
+        for (int i=0;i<files.length;i++) {
+            items.put(files[i],read(files[i]));
+        }
+        return put(Folder,items);
+    }
+
+    /**
+     * Record a folder listing that was read elsewhere, for example from a
+     * catalog. Replaces any previous listing of the folder.
+     * @param Folder Folder
+     * @param Entries Folder entries and their attributes, in listing order
+     * @return Folder entries
+     */
+    public List<File> put(File Folder, Map<File,Attributes> Entries) {
+        // drop entries that were removed since the last listing
+        List<File> previous = folders.get(Folder.getAbsolutePath());
+        if (previous != null) {
+            Iterator<File> it = previous.iterator();
+            while (it.hasNext()) {
+                entries.remove(it.next().getAbsolutePath());
+            }
+        }
+        List<File> listing = new ArrayList<File>(Entries.size());
+        Iterator<Map.Entry<File,Attributes>> it = Entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<File,Attributes> entry = it.next();
+            entries.put(entry.getKey().getAbsolutePath(),entry.getValue());
+            listing.add(entry.getKey());
+        }
+        listing = Collections.unmodifiableList(listing);
+        folders.put(Folder.getAbsolutePath(),listing);
+        return listing;
+    }
+
+    /**
+     * Read file attributes from the file system.
+     * @param F File
+     * @return Attributes
+     */
+    static Attributes read(File F) {
+        long modified = F.lastModified();
+        if (modified == 0L && !F.exists()) {
+            return MISSING;
+        }
+        boolean directory = F.isDirectory();
+        return new Attributes(true,directory,directory ? 0L : F.length(),modified);
+    }
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Immutable file attributes.
+     */
+    public static class Attributes {
+
+        private boolean exists;
+        private boolean directory;
+        private long length;
+        private long lastModified;
+
+        /**
+         * Attributes constructor
+         * @param Exists File exists
+         * @param Directory File is a folder
+         * @param Length File size
+         * @param LastModified Last modified time
+         */
+        public Attributes(boolean Exists, boolean Directory, long Length, long LastModified) {
+            exists = Exists;
+            directory = Directory;
+            length = Length;
+            lastModified = LastModified;
+        }
+
+        /**
+         * Get last modified time.
+         * @return Last modified time
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Get file size.
+         * @return Size in bytes
+         */
+        public long getLength() {
+            return length;
+        }
+
+        /**
+         * Determine if the file is a folder.
+         * @return True if the file is a folder, false otherwise.
+         */
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        /**
+         * Determine if the file exists.
+         * @return True if the file exists, false otherwise.
+         */
+        public boolean isExisting() {
+            return exists;
+        }
+
+    } // end class
+
+} // end class
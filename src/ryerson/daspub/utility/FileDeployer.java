@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2011 Davis Marques
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ */
+package ryerson.daspub.utility;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.channels.FileChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import ryerson.daspub.Config;
+
+/**
+ * Deploys files to the output folder. Files whose output copy already has
+ * the same size and modification time are skipped. Other files are copied
+ * through FileChannel.transferTo, or hard linked when linking is enabled and
+ * the platform supports it. Outputs are replaced rather than written in
+ * place, so a hard linked source is never modified. Generators that write
+ * into folders that may hold deployed files use getTempFile and replace, or
+ * write, for the same reason.
+ * @author dmarques
+ */
+public class FileDeployer {
+
+    private boolean link;
+
+    private static FileDeployer instance = null;
+    private static Method createLink = null;
+    private static Method toPath = null;
+
+    private static final Logger logger = Logger.getLogger(FileDeployer.class.getName());
+
+    static {
+        // hard links are available from Java 7
+        try {
+            Class<?> files = Class.forName("java.nio.file.Files");
+            Class<?> path = Class.forName("java.nio.file.Path");
+            createLink = files.getMethod("createLink",path,path);
+            toPath = File.class.getMethod("toPath");
+        } catch (Exception ex) {
+            logger.log(Level.FINE,"Hard links are not supported on this platform");
+        }
+    }
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * FileDeployer constructor
+     * @param Link Hard link files instead of copying them, where possible
+     */
+    public FileDeployer(boolean Link) {
+        link = Link;
+    }
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Copy a file. The file is written to a temporary file beside the output
+     * file, which then replaces the output file. The modification time of the
+     * input file is kept.
+     * @param Input Input file
+     * @param Output Output file
+     * @throws IOException
+     */
+    public static void copy(File Input, File Output) throws IOException {
+        Output.getParentFile().mkdirs();
+        File temp = getTempFile(Output);
+        FileInputStream in = null;
+        FileOutputStream out = null;
+        try {
+            in = new FileInputStream(Input);
+            out = new FileOutputStream(temp);
+            FileChannel source = in.getChannel();
+            FileChannel target = out.getChannel();
+            long size = source.size();
+            long position = 0;
+            while (position < size) {
+                position += source.transferTo(position,size - position,target);
+            }
+            out.close();
+            out = null;
+            temp.setLastModified(Input.lastModified());
+            replace(temp,Output);
+        } finally {
+            IOUtils.closeQuietly(in);
+            IOUtils.closeQuietly(out);
+            FileUtils.deleteQuietly(temp);
+        }
+    }
+
+    /**
+     * Get a temporary file beside the output file, for writing content that
+     * will replace the output file.
+     * @param Output Output file
+     * @return Temporary file
+     */
+    public static File getTempFile(File Output) {
+        return new File(Output.getAbsoluteFile().getParentFile(),Output.getName() + "." + Thread.currentThread().getId() + ".tmp");
+    }
+
+    /**
+     * Deploy a file.
+     * @param Input Input file
+     * @param Output Output file
+     * @return True if the output file was written, false if it was up to date.
+     * @throws IOException
+     */
+    public boolean deploy(File Input, File Output) throws IOException {
+        if (isCurrent(Input,Output)) {
+            return false;
+        }
+        if (!link || !link(Input,Output)) {
+            copy(Input,Output);
+        }
+        return true;
+    }
+
+    /**
+     * Deploy the contents of a folder, including subfolders.
+     * @param Input Input folder
+     * @param Output Output folder
+     * @return Number of files written
+     * @throws IOException
+     */
+    public int deployDirectory(File Input, File Output) throws IOException {
+        File[] files = Input.listFiles();
+        if (files == null) {
+            throw new IOException("Could not list folder " + Input.getAbsolutePath());
+        }
+        Output.mkdirs();
+        int count = 0;
+        for (int i=0;i<files.length;i++) {
+            File f = files[i];
+            File out = new File(Output,f.getName());
+            if (f.isDirectory()) {
+                count += deployDirectory(f,out);
+            } else if (deploy(f,out)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get process wide deployer. Linking is taken from the configuration on
+     * first use.
+     * @return
+     */
+    public static synchronized FileDeployer getInstance() {
+        if (instance == null) {
+            instance = new FileDeployer(Config.DEPLOY_HARD_LINKS);
+        }
+        return instance;
+    }
+
+    /**
+     * Determine if the output file is a current copy of the input file.
+     * @param Input Input file
+     * @param Output Output file
+     * @return True if the output file has the same size and modification
+     * time as the input file, false otherwise.
+     */
+    public static boolean isCurrent(File Input, File Output) {
+        return Output.isFile() &&
+               Output.length() == Input.length() &&
+               Output.lastModified() == Input.lastModified();
+    }
+
+    /**
+     * Hard link the output file to the input file.
+     * @param Input Input file
+     * @param Output Output file
+     * @return True if the link was created, false if linking is not possible,
+     * for example because the files are on different file systems.
+     */
+    private static boolean link(File Input, File Output) {
+        if (createLink == null) {
+            return false;
+        }
+        Output.getParentFile().mkdirs();
+        File temp = new File(Output.getParentFile(),Output.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            createLink.invoke(null,toPath.invoke(temp),toPath.invoke(Input));
+            replace(temp,Output);
+            return true;
+        } catch (Exception ex) {
+            logger.log(Level.FINE,"Could not link {0}, copying instead",Output.getAbsolutePath());
+            return false;
+        } finally {
+            FileUtils.deleteQuietly(temp);
+        }
+    }
+
+    /**
+     * Replace the output file with a temporary file. If the output file is a
+     * hard link, the link is removed and its source is left unchanged.
+     * @param Temp Temporary file
+     * @param Output Output file
+     * @throws IOException
+     */
+    public static void replace(File Temp, File Output) throws IOException {
+        if (Output.exists() && !Output.delete()) {
+            throw new IOException("Could not replace " + Output.getAbsolutePath());
+        }
+        if (!Temp.renameTo(Output)) {
+            throw new IOException("Could not write " + Output.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Write a string to a file. The string is written to a temporary file,
+     * which then replaces the output file.
+     * @param Output Output file
+     * @param Data String
+     * @param Encoding Character encoding, or null for the platform default
+     * @throws IOException
+     */
+    public static void write(File Output, String Data, String Encoding) throws IOException {
+        Output.getAbsoluteFile().getParentFile().mkdirs();
+        File temp = getTempFile(Output);
+        try {
+            FileUtils.writeStringToFile(temp,Data,Encoding);
+            replace(temp,Output);
+        } finally {
+            FileUtils.deleteQuietly(temp);
+        }
+    }
+
+} // end class
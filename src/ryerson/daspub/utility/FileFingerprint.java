@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2011 Davis Marques
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ */
+package ryerson.daspub.utility;
+
+import java.io.File;
+
+/**
+ * Identifies a particular version of a file by its absolute path, size and
+ * last modified time. Used as a cache key for data derived from the file.
+ * @author dmarques
+ */
+public class FileFingerprint {
+
+    private String path;
+    private long length;
+    private long lastModified;
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * FileFingerprint constructor. Required for deserialization.
+     */
+    private FileFingerprint() {
+    }
+
+    /**
+     * FileFingerprint constructor
+     * @param F File
+     */
+    public FileFingerprint(File F) {
+        path = F.getAbsolutePath();
+        length = F.length();
+        lastModified = F.lastModified();
+    }
+
+    /**
+     * FileFingerprint constructor
+     * @param Path Absolute file path
+     * @param Length File size in bytes
+     * @param LastModified Last modified time
+     */
+    FileFingerprint(String Path, long Length, long LastModified) {
+        path = Path;
+        length = Length;
+        lastModified = LastModified;
+    }
+
+    //--------------------------------------------------------------------------
+
+    @Override
+    public boolean equals(Object O) {
+        if (this == O) {
+            return true;
+        }
+        if (!(O instanceof FileFingerprint)) {
+            return false;
+        }
+        FileFingerprint f = (FileFingerprint) O;
+        return path.equals(f.path) && length == f.length && lastModified == f.lastModified;
+    }
+
+    /**
+     * Get file last modified time.
+     * @return Last modified time
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Get file size.
+     * @return File size in bytes
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Get absolute file path.
+     * @return Path
+     */
+    public String getPath() {
+        return path;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = path.hashCode();
+        hash = 31 * hash + (int) (length ^ (length >>> 32));
+        hash = 31 * hash + (int) (lastModified ^ (lastModified >>> 32));
+        return hash;
+    }
+
+    /**
+     * Determine if the file still matches this fingerprint.
+     * @param F File
+     * @return True if the file size and last modified time are unchanged, false otherwise.
+     */
+    public boolean matches(File F) {
+        return F.length() == length && F.lastModified() == lastModified;
+    }
+
+    @Override
+    public String toString() {
+        return path + " (" + length + " bytes, modified " + lastModified + ")";
+    }
+
+} // end class
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2011 Davis Marques
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ */
+package ryerson.daspub.utility;
+
+import com.google.gson.Gson;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+/**
+ * Index of metadata derived from files. Metadata is computed once per file
+ * version, as identified by its FileFingerprint, and reused until the file
+ * changes. The index can be saved to and loaded from a JSON file so that
+ * metadata survives between runs.
+ * @author dmarques
+ * @param <T> Metadata type
+ */
+public abstract class FileMetadataIndex<T> {
+
+    private HashMap<String,Entry<T>> entries = new HashMap<String,Entry<T>>();
+
+    private static final Logger logger = Logger.getLogger(FileMetadataIndex.class.getName());
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Compute metadata for a file.
+     * @param F File
+     * @return Metadata
+     * @throws Exception
+     */
+    protected abstract T compute(File F) throws Exception;
+
+    /**
+     * Get metadata for a file. If the index does not hold current metadata
+     * for the file, the metadata is computed and added to the index.
+     * @param F File
+     * @return Metadata or null if the metadata could not be computed.
+     */
+    public T get(File F) {
+        FileFingerprint fingerprint = new FileFingerprint(F);
+        synchronized (this) {
+            Entry<T> entry = entries.get(fingerprint.getPath());
+            if (entry != null && entry.fingerprint.equals(fingerprint)) {
+                return entry.metadata;
+            }
+        }
+        try {
+            T metadata = compute(F);
+            put(fingerprint,metadata);
+            return metadata;
+        } catch (Exception ex) {
+            String stack = ExceptionUtils.getStackTrace(ex);
+            logger.log(Level.SEVERE,"Could not read metadata for \"{0}\"\n\n{1}",
+                    new Object[]{F.getAbsolutePath(),stack});
+        }
+        return null;
+    }
+
+    /**
+     * Get the type of the entry map, for deserialization.
+     * @return Map type
+     */
+    protected abstract Type getEntryMapType();
+
+    /**
+     * Remove a file from the index.
+     * @param F File
+     */
+    public synchronized void invalidate(File F) {
+        entries.remove(F.getAbsolutePath());
+    }
+
+    /**
+     * Load index entries from a file. Entries for files that have since
+     * changed are discarded when they are next requested. If the index file
+     * does not exist, nothing is loaded.
+     * @param F Index file
+     */
+    public void load(File F) {
+        if (!F.exists()) {
+            return;
+        }
+        try {
+            String json = FileUtils.readFileToString(F,"UTF-8");
+            Map<String,Entry<T>> items = new Gson().fromJson(json,getEntryMapType());
+            if (items != null) {
+                synchronized (this) {
+                    for (Map.Entry<String,Entry<T>> item : items.entrySet()) {
+                        if (!entries.containsKey(item.getKey())) {
+                            entries.put(item.getKey(),item.getValue());
+                        }
+                    }
+                }
+            }
+            logger.log(Level.FINE,"Loaded metadata index \"{0}\"",F.getAbsolutePath());
+        } catch (Exception ex) {
+            String stack = ExceptionUtils.getStackTrace(ex);
+            logger.log(Level.WARNING,"Could not load metadata index \"{0}\"\n\n{1}",
+                    new Object[]{F.getAbsolutePath(),stack});
+        }
+    }
+
+    /**
+     * Add metadata to the index.
+     * @param Fingerprint File fingerprint
+     * @param Metadata Metadata
+     */
+    private synchronized void put(FileFingerprint Fingerprint, T Metadata) {
+        entries.put(Fingerprint.getPath(),new Entry<T>(Fingerprint,Metadata));
+    }
+
+    /**
+     * Save index entries to a file.
+     * @param F Index file
+     */
+    public void save(File F) {
+        String json;
+        synchronized (this) {
+            json = new Gson().toJson(entries,getEntryMapType());
+        }
+        try {
+            FileDeployer.write(F,json,"UTF-8");
+            logger.log(Level.FINE,"Wrote metadata index \"{0}\"",F.getAbsolutePath());
+        } catch (IOException ex) {
+            String stack = ExceptionUtils.getStackTrace(ex);
+            logger.log(Level.WARNING,"Could not write metadata index \"{0}\"\n\n{1}",
+                    new Object[]{F.getAbsolutePath(),stack});
+        }
+    }
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Index entry.
+     * @param <T> Metadata type
+     */
+    protected static class Entry<T> {
+
+        private FileFingerprint fingerprint;
+        private T metadata;
+
+        /**
+         * Entry constructor
+         * @param Fingerprint File fingerprint
+         * @param Metadata Metadata
+         */
+        Entry(FileFingerprint Fingerprint, T Metadata) {
+            fingerprint = Fingerprint;
+            metadata = Metadata;
+        }
+
+    } // end class
+
+} // end class
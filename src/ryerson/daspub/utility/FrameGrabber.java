@@ -18,125 +18,271 @@
  *******************************************************************************/
 package ryerson.daspub.utility;
 
-import javax.imageio.ImageIO;
-import java.io.File;
-import java.awt.image.BufferedImage;
-import com.xuggle.mediatool.IMediaReader;
-import com.xuggle.mediatool.MediaListenerAdapter;
-import com.xuggle.mediatool.ToolFactory;
-import com.xuggle.mediatool.event.IVideoPictureEvent;
+import com.xuggle.xuggler.ICodec;
+import com.xuggle.xuggler.IContainer;
+import com.xuggle.xuggler.IPacket;
+import com.xuggle.xuggler.IPixelFormat;
+import com.xuggle.xuggler.IRational;
+import com.xuggle.xuggler.IStream;
+import com.xuggle.xuggler.IStreamCoder;
+import com.xuggle.xuggler.IVideoPicture;
+import com.xuggle.xuggler.IVideoResampler;
 import com.xuggle.xuggler.Global;
+import com.xuggle.xuggler.Utils;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.apache.commons.lang3.exception.ExceptionUtils;
+import javax.imageio.ImageIO;
 
 /**
- * Using {@link IMediaReader}, takes a media container, finds the first video 
- * stream, decodes that stream, and then writes video frames out to a PNG image 
- * file, based on the video presentation timestamps.
+ * Extracts a single frame and stream properties from a video file. The
+ * grabber seeks to the key frame at or before the requested time offset and
+ * decodes one picture from there, rather than decoding the stream from the
+ * beginning. Grabbers hold no static state, so frames can be grabbed from
+ * many videos at once, using one grabber per thread.
  * @author aclarke
  * @author trebor
+ * @author dmarques
  */
-public class FrameGrabber extends MediaListenerAdapter {
-
-    private int CAPTURED_FRAMES = 0;        // count of the number of frames captures
-    private int MAX_CAPTURED_FRAMES = 1;    // maximum number of frames to capture
-    
-    // The number of seconds between frames.
-    public static final double SECONDS_BETWEEN_FRAMES = 5;
-
-    // The number of micro-seconds between frames.
-    public static final long MICRO_SECONDS_BETWEEN_FRAMES =
-            (long) (Global.DEFAULT_PTS_PER_SECOND * SECONDS_BETWEEN_FRAMES);
-
-    // Time of last frame write.
-    private static long mLastPtsWrite = Global.NO_PTS;
-    
-    // The video stream index, used to ensure we display frames from one
-    // and only one video stream from the media container.
-    private int mVideoStreamIndex = -1;
+public class FrameGrabber {
 
     private File input;
-    private File output;
-    
+    private IContainer container;
+    private IStream stream;
+    private IStreamCoder coder;
+    private int index;
+    private long pictureTime;
+
     private static final Logger logger = Logger.getLogger(FrameGrabber.class.getName());
 
     //--------------------------------------------------------------------------
-    
+
     /** 
      * FrameGrabber constructor.
-     * @param Input Absolute path to input file
-     * @param Output Absolute path to output file
+     * @param Input Input video file
      */
-    public FrameGrabber(File Input, File Output) {
+    public FrameGrabber(File Input) {
         input = Input;
-        output = Output;
-        
-        // create a media reader for processing video
-        IMediaReader reader = ToolFactory.makeReader(Input.getAbsolutePath());
-
-        // stipulate that we want BufferedImages created in BGR 24bit color space
-        reader.setBufferedImageTypeToGenerate(BufferedImage.TYPE_3BYTE_BGR);
-
-        // note that DecodeAndCaptureFrames is derived from
-        // MediaReader.ListenerAdapter and thus may be added as a listener
-        // to the MediaReader. DecodeAndCaptureFrames implements
-        // onVideoPicture().
-        reader.addListener(this);
-
-        // read out the contents of the media file, note that nothing else
-        // happens here.  action happens in the onVideoPicture() method
-        // which is called when complete video pictures are extracted from
-        // the media source
-        while (reader.readPacket() == null && CAPTURED_FRAMES < MAX_CAPTURED_FRAMES) {
-            do {
-            } while (false);
-        }
     }
-    
+
     //--------------------------------------------------------------------------
 
     /**
-     * Called after a video frame has been decoded from a media stream.
-     * Optionally a BufferedImage version of the frame may be passed
-     * if the calling {@link IMediaReader} instance was configured to
-     * create BufferedImages. This method blocks, so return quickly.
+     * Close the container and decoder.
+     */
+    private void close() {
+        if (coder != null) {
+            coder.close();
+            coder = null;
+        }
+        if (container != null) {
+            container.close();
+            container = null;
+        }
+        stream = null;
+    }
+
+    /**
+     * Decode the next complete picture of the video stream.
+     * @return Picture or null if the stream ended before a picture was decoded.
+     * @throws IOException
+     */
+    private IVideoPicture decodePicture() throws IOException {
+        IPacket packet = IPacket.make();
+        IVideoPicture picture = IVideoPicture.make(coder.getPixelType(),coder.getWidth(),coder.getHeight());
+        while (container.readNextPacket(packet) >= 0) {
+            if (packet.getStreamIndex() != index) {
+                continue;
+            }
+            int offset = 0;
+            while (offset < packet.getSize()) {
+                int bytes = coder.decodeVideo(picture,packet,offset);
+                if (bytes < 0) {
+                    throw new IOException("Could not decode video " + input.getAbsolutePath());
+                }
+                offset += bytes;
+                if (picture.isComplete()) {
+                    return picture;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get container duration.
+     * @return Duration in microseconds or 0 if unknown.
+     */
+    private long getDuration() {
+        long duration = container.getDuration();
+        if (duration == Global.NO_PTS || duration < 0) {
+            return 0;
+        }
+        return duration;
+    }
+
+    /**
+     * Get the frame at or shortly before the time offset. If the video is
+     * shorter than the offset, the frame at the middle of the video is used.
+     * @param Offset Time offset in seconds
+     * @return Frame image
+     * @throws IOException if the video can not be opened or decoded
+     */
+    public BufferedImage grab(double Offset) throws IOException {
+        open();
+        try {
+            return grabPicture(Offset);
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Seek to the time offset and decode one picture from the open video.
+     * @param Offset Time offset in seconds
+     * @return Frame image
+     * @throws IOException
+     */
+    private BufferedImage grabPicture(double Offset) throws IOException {
+        // seek to the key frame at or before the offset
+        double offset = Offset;
+        long duration = getDuration();
+        if (duration > 0) {
+            double seconds = (double) duration / Global.DEFAULT_PTS_PER_SECOND;
+            if (offset > seconds) {
+                offset = seconds / 2;
+            }
+        }
+        IRational base = stream.getTimeBase();
+        if (offset > 0 && base != null && base.getDouble() > 0) {
+            long start = stream.getStartTime() == Global.NO_PTS ? 0 : stream.getStartTime();
+            long target = start + (long) (offset / base.getDouble());
+            if (container.seekKeyFrame(index,start,target,target,0) < 0) {
+                logger.log(Level.FINE,"Could not seek in video {0}, using first frame",input.getAbsolutePath());
+            }
+        }
+        // decode one picture
+        IVideoPicture picture = decodePicture();
+        if (picture == null) {
+            throw new IOException("No frame could be decoded from video " + input.getAbsolutePath());
+        }
+        pictureTime = picture.getTimeStamp() == Global.NO_PTS ? 0 : picture.getTimeStamp();
+        return toImage(picture);
+    }
+
+    /**
+     * Open the container and the decoder of its first video stream.
+     * @throws IOException
+     */
+    private void open() throws IOException {
+        container = IContainer.make();
+        if (container.open(input.getAbsolutePath(),IContainer.Type.READ,null) < 0) {
+            container = null;
+            throw new IOException("Could not open video " + input.getAbsolutePath());
+        }
+        for (int i=0;i<container.getNumStreams() && stream == null;i++) {
+            IStream s = container.getStream(i);
+            if (s.getStreamCoder().getCodecType() == ICodec.Type.CODEC_TYPE_VIDEO) {
+                index = i;
+                stream = s;
+            }
+        }
+        if (stream == null) {
+            close();
+            throw new IOException("Video " + input.getAbsolutePath() + " has no video stream");
+        }
+        if (stream.getStreamCoder().open() < 0) {
+            close();
+            throw new IOException("Could not open video decoder for " + input.getAbsolutePath());
+        }
+        coder = stream.getStreamCoder();
+    }
+
+    /**
+     * Read the stream properties of the video and write its poster frame, 
+     * opening the container only once.
+     * @param Offset Poster frame time offset in seconds
+     * @param Poster Poster PNG output file. If null, no frame is decoded.
+     * @return Video metadata
+     * @throws IOException if the video can not be opened or decoded
      */
-    public void onVideoPicture(IVideoPictureEvent event) {
+    public VideoMetadata probe(double Offset, File Poster) throws IOException {
+        open();
         try {
-            // if the stream index does not match the selected stream index,
-            // then have a closer look
-            if (event.getStreamIndex() != mVideoStreamIndex) {
-                // if the selected video stream id is not yet set, go ahead an
-                // select this lucky video stream
-                if (-1 == mVideoStreamIndex) {
-                    mVideoStreamIndex = event.getStreamIndex();
-                } // otherwise return, no need to show frames from this video stream
-                else {
-                    return;
+            String audio = null;
+            for (int i=0;i<container.getNumStreams() && audio == null;i++) {
+                IStreamCoder c = container.getStream(i).getStreamCoder();
+                if (c.getCodecType() == ICodec.Type.CODEC_TYPE_AUDIO) {
+                    audio = getCodecName(c);
                 }
             }
-            // if uninitialized, backdate mLastPtsWrite so we get the very
-            // first frame
-            if (mLastPtsWrite == Global.NO_PTS) {
-                mLastPtsWrite = event.getTimeStamp() - MICRO_SECONDS_BETWEEN_FRAMES;
+            long time = 0;
+            if (Poster != null) {
+                BufferedImage image = grabPicture(Offset);
+                ImageIO.write(image,"png",Poster);
+                time = pictureTime / 1000;
+            }
+            return new VideoMetadata(coder.getWidth(),
+                                     coder.getHeight(),
+                                     getDuration() / 1000,
+                                     getCodecName(coder),
+                                     audio,
+                                     container.getBitRate(),
+                                     container.getNumStreams(),
+                                     time);
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Get the codec name of a stream.
+     * @param Coder Stream coder
+     * @return Codec name or null if the codec is unknown.
+     */
+    private static String getCodecName(IStreamCoder Coder) {
+        ICodec codec = Coder.getCodec();
+        return codec == null ? null : codec.getName();
+    }
+
+    /**
+     * Convert a video picture to a BGR image.
+     * @param Picture Video picture
+     * @return Image
+     * @throws IOException
+     */
+    private BufferedImage toImage(IVideoPicture Picture) throws IOException {
+        IVideoPicture picture = Picture;
+        if (picture.getPixelType() != IPixelFormat.Type.BGR24) {
+            int w = picture.getWidth();
+            int h = picture.getHeight();
+            IVideoResampler resampler = IVideoResampler.make(w,h,IPixelFormat.Type.BGR24,w,h,picture.getPixelType());
+            if (resampler == null) {
+                throw new IOException("Could not convert video frame for " + input.getAbsolutePath());
             }
-            // if it's time to write the next frame
-            if (event.getTimeStamp() - mLastPtsWrite >= MICRO_SECONDS_BETWEEN_FRAMES) {
-                // write out PNG
-                ImageIO.write(event.getImage(), "png", output);
-                // indicate file written
-                double seconds = ((double) event.getTimeStamp()) / Global.DEFAULT_PTS_PER_SECOND;
-                // update last write time
-                mLastPtsWrite += MICRO_SECONDS_BETWEEN_FRAMES;
-                CAPTURED_FRAMES++;
+            picture = IVideoPicture.make(IPixelFormat.Type.BGR24,w,h);
+            if (resampler.resample(picture,Picture) < 0) {
+                throw new IOException("Could not convert video frame for " + input.getAbsolutePath());
             }
-        } catch (Exception ex) {
-            String stack = ExceptionUtils.getStackTrace(ex);
-            logger.log(Level.SEVERE,
-                       "Could not write poster image for video file {0}\n\n{1}",
-                        new Object[]{input.getAbsolutePath(),stack});
         }
+        return Utils.videoPictureToImage(picture);
     }
-    
-} // end class
\ No newline at end of file
+
+    /**
+     * Write the frame at or shortly before the time offset as a PNG image.
+     * @param Output Output file
+     * @param Offset Time offset in seconds
+     * @throws IOException
+     */
+    public void write(File Output, double Offset) throws IOException {
+        BufferedImage image = grab(Offset);
+        // the output may be linked to a cached poster, replace it rather
+        // than write through the link
+        Output.delete();
+        ImageIO.write(image,"png",Output);
+        logger.log(Level.FINE,"Wrote poster image {0}",Output.getAbsolutePath());
+    }
+
+} // end class
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2011 Davis Marques
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ */
+package ryerson.daspub.utility;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Hashing utility methods.
+ * @author dmarques
+ */
+public class HashUtils {
+
+    /**
+     * Get MD5 digest of a string as a hexadecimal string.
+     * @param Value Value
+     * @return Hexadecimal digest
+     */
+    public static String md5(String Value) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            byte[] digest = md.digest(Value.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder();
+            for (int i=0;i<digest.length;i++) {
+                sb.append(String.format("%02x",digest[i] & 0xff));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Get MD5 digest of a list of values. Null values are treated as empty
+     * strings.
+     * @param Values Values
+     * @return Hexadecimal digest
+     */
+    public static String md5(Object... Values) {
+        StringBuilder sb = new StringBuilder();
+        for (int i=0;i<Values.length;i++) {
+            if (i > 0) {
+                sb.append('\u0000');
+            }
+            if (Values[i] != null) {
+                sb.append(Values[i].toString());
+            }
+        }
+        return md5(sb.toString());
+    }
+
+} // end class
@@ -19,13 +19,17 @@
 
 package ryerson.daspub.utility;
 
-import com.itextpdf.text.pdf.PdfException;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.imageio.ImageIO;
 import net.coobird.thumbnailator.Thumbnails;
 import net.coobird.thumbnailator.resizers.configurations.ScalingMode;
 import org.apache.commons.io.FilenameUtils;
@@ -38,6 +42,13 @@ import org.apache.sanselan.Sanselan;
  */
 public class ImageUtils {
 
+    private static final String[] IMAGEIO_TYPES = {"jpg","jpeg","gif","png"};
+    private static final String[] SANSELAN_TYPES = {"tif","tiff"};
+    private static final String[] JPG_TYPES = {"jpg","jpeg"};
+
+    public static final String JPG_FORMAT = "jpg";
+    public static final float JPG_QUALITY = 1.0f;
+
     private static final Logger logger = Logger.getLogger(ImageUtils.class.getName());
 
     //--------------------------------------------------------------------------
@@ -74,6 +85,45 @@ public class ImageUtils {
         return name + "-" + String.valueOf(Increment) + ".jpg";
     }
 
+    /**
+     * Get the file that a JPG image is written to. If the output file name
+     * does not have a JPG extension, one is appended.
+     * @param Output Output file
+     * @return
+     */
+    private static File getJPGOutputFile(File Output) {
+        if (FilenameUtils.isExtension(Output.getName(),JPG_TYPES)) {
+            return Output;
+        }
+        return new File(Output.getParentFile(),Output.getName() + ".jpg");
+    }
+
+    /**
+     * Determine if the file is an image that can be decoded.
+     * @param Input Input file
+     * @return True if the file can be decoded, false otherwise.
+     */
+    public static boolean isProcessableImage(File Input) {
+        return FilenameUtils.isExtension(Input.getName(),IMAGEIO_TYPES) ||
+               FilenameUtils.isExtension(Input.getName(),SANSELAN_TYPES);
+    }
+
+    /**
+     * Decode an image file.
+     * @param Input Input file
+     * @return Decoded image or null if the file is not a processable image.
+     * @throws IOException
+     * @throws ImageReadException
+     */
+    public static BufferedImage readImage(File Input) throws IOException, ImageReadException {
+        if (FilenameUtils.isExtension(Input.getName(),IMAGEIO_TYPES)) {
+            return ImageIO.read(Input);
+        } else if (FilenameUtils.isExtension(Input.getName(),SANSELAN_TYPES)) {
+            return Sanselan.getBufferedImage(Input);
+        }
+        return null;
+    }
+
     /**
      * Resize image and output as byte array.
      * @param Input Input file
@@ -107,36 +157,97 @@ public class ImageUtils {
         if (output.isDirectory()) {
             output = new File(Output,Input.getName());
         }
-        // write image
-        if (FilenameUtils.isExtension(Input.getName(),"jpg")) {
-            Thumbnails.of(Input)
-                      .outputQuality(1.0f)
-                      .scalingMode(ScalingMode.BICUBIC)
-                      .size(Width,Height)
-                      .toFile(output);
-            logger.log(Level.FINE,"Wrote image {0}", output.getAbsolutePath());
-        } else if (FilenameUtils.isExtension(Input.getName(),"gif") ||
-                   FilenameUtils.isExtension(Input.getName(),"png")) {
-            Thumbnails.of(Input)
-                      .outputFormat("jpg")
-                      .outputQuality(1.0f)
-                      .scalingMode(ScalingMode.BICUBIC)
-                      .size(Width,Height)
-                      .toFile(output);
-            logger.log(Level.FINE,"Wrote image {0}", output.getAbsolutePath());
-        } else if (FilenameUtils.isExtension(Input.getName(),"tif")) {
-            BufferedImage image = Sanselan.getBufferedImage(Input);
-            Thumbnails.of(image)
-                      .outputFormat("jpg")
-                      .outputQuality(1.0f)
-                      .scalingMode(ScalingMode.BICUBIC)
-                      .size(Width,Height)
-                      .toFile(output);
-        } else {
+        writeJPGImages(Input,Collections.singletonList(new Rendition(output,Width,Height)));
+    }
+
+    /**
+     * Decode the input file once and write a resized JPG image for each
+     * rendition. Renditions are produced from the largest to the smallest,
+     * each one downscaled from the previous one.
+     * @param Input Input file
+     * @param Renditions Output renditions
+     * @return Written files, in the same order as the renditions. Empty if
+     * the input file is not a processable image.
+     * @throws IOException
+     * @throws ImageReadException
+     */
+    public static List<File> writeJPGImages(File Input, List<Rendition> Renditions)
+           throws IOException, ImageReadException {
+        if (!isProcessableImage(Input)) {
             logger.log(Level.WARNING,
                        "Could not write JPG for {0}. File is not a processable image.",
-                       output.getAbsolutePath());
+                       Input.getAbsolutePath());
+            return new ArrayList<File>();
+        }
+        // resolve output file names
+        List<Rendition> renditions = new ArrayList<Rendition>();
+        ArrayList<File> files = new ArrayList<File>();
+        for (int i=0;i<Renditions.size();i++) {
+            Rendition r = Renditions.get(i);
+            File output = getJPGOutputFile(r.getOutput());
+            renditions.add(new Rendition(output,r.getWidth(),r.getHeight()));
+            files.add(output);
+        }
+        // render only the renditions that are not cached
+        RenditionCache cache = RenditionCache.getInstance();
+        List<Rendition> missing = cache.restore(Input,0,renditions,JPG_FORMAT,JPG_QUALITY);
+        if (!missing.isEmpty()) {
+            BufferedImage image = readImage(Input);
+            if (image == null) {
+                throw new IOException("Could not decode image " + Input.getAbsolutePath());
+            }
+            writeJPGImages(image,missing);
+            cache.store(Input,0,missing,JPG_FORMAT,JPG_QUALITY);
+        }
+        return files;
+    }
+
+    /**
+     * Write a resized JPG image for each rendition of a decoded image.
+     * Renditions are produced from the largest to the smallest, each one
+     * downscaled from the previous one.
+     * @param Image Source image
+     * @param Renditions Output renditions
+     * @return Written files, in the same order as the renditions.
+     * @throws IOException
+     */
+    public static List<File> writeJPGImages(BufferedImage Image, List<Rendition> Renditions)
+           throws IOException {
+        // order renditions from largest to smallest
+        ArrayList<Rendition> ordered = new ArrayList<Rendition>(Renditions);
+        Collections.sort(ordered,new Comparator<Rendition>() {
+            @Override
+            public int compare(Rendition A, Rendition B) {
+                long a = (long) A.getWidth() * A.getHeight();
+                long b = (long) B.getWidth() * B.getHeight();
+                return a > b ? -1 : (a < b ? 1 : 0);
+            }
+        });
+        // downscale progressively
+        BufferedImage current = Image;
+        for (int i=0;i<ordered.size();i++) {
+            Rendition r = ordered.get(i);
+            current = Thumbnails.of(current)
+                                .scalingMode(ScalingMode.BICUBIC)
+                                .size(r.getWidth(),r.getHeight())
+                                .asBufferedImage();
+            File output = getJPGOutputFile(r.getOutput());
+            // the output may be linked to a cached rendition, replace it
+            // rather than write through the link
+            output.delete();
+            Thumbnails.of(current)
+                      .scale(1.0)
+                      .outputFormat(JPG_FORMAT)
+                      .outputQuality(JPG_QUALITY)
+                      .toFile(output);
+            logger.log(Level.FINE,"Wrote image {0}", output.getAbsolutePath());
+        }
+        // return files in the requested order
+        ArrayList<File> files = new ArrayList<File>();
+        for (int i=0;i<Renditions.size();i++) {
+            files.add(getJPGOutputFile(Renditions.get(i).getOutput()));
         }
+        return files;
     }
 
 } // end class
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2011 Davis Marques
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ */
+package ryerson.daspub.utility;
+
+import java.awt.Dimension;
+
+/**
+ * Immutable description of a PDF document.
+ * @author dmarques
+ */
+public class PDFMetadata {
+
+    private int pageCount;
+    private int[] pageWidths;
+    private int[] pageHeights;
+    private boolean encrypted;
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * PDFMetadata constructor
+     * @param PageWidths Media box width of each page
+     * @param PageHeights Media box height of each page
+     * @param Encrypted Document encryption flag
+     */
+    public PDFMetadata(int[] PageWidths, int[] PageHeights, boolean Encrypted) {
+        pageCount = PageWidths.length;
+        pageWidths = PageWidths.clone();
+        pageHeights = PageHeights.clone();
+        encrypted = Encrypted;
+    }
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Get page count.
+     * @return Number of pages in the document
+     */
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Get page size in points.
+     * @param Page Page number. Zero based page index.
+     * @return Page media box dimensions
+     */
+    public Dimension getPageSize(int Page) {
+        return new Dimension(pageWidths[Page],pageHeights[Page]);
+    }
+
+    /**
+     * Determine if the document is encrypted.
+     * @return True if the document is encrypted, false otherwise.
+     */
+    public boolean isEncrypted() {
+        return encrypted;
+    }
+
+} // end class
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2011 Davis Marques
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ */
+package ryerson.daspub.utility;
+
+import com.google.gson.reflect.TypeToken;
+import java.io.File;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jpedal.PdfDecoder;
+import org.jpedal.objects.PdfPageData;
+
+/**
+ * Process wide index of PDF document metadata. Each document is opened once
+ * per version to read its page count, page sizes and encryption flag.
+ * @author dmarques
+ */
+public class PDFMetadataIndex extends FileMetadataIndex<PDFMetadata> {
+
+    private static PDFMetadataIndex instance = new PDFMetadataIndex();
+
+    private static final Logger logger = Logger.getLogger(PDFMetadataIndex.class.getName());
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * PDFMetadataIndex constructor
+     */
+    private PDFMetadataIndex() {
+    }
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Read metadata from a PDF document.
+     * @param F PDF file
+     * @return Metadata
+     * @throws Exception
+     */
+    @Override
+    protected PDFMetadata compute(File F) throws Exception {
+        logger.log(Level.FINE,"Reading PDF metadata \"{0}\"",F.getAbsolutePath());
+        PdfDecoder pdf = new PdfDecoder(true);
+        try {
+            pdf.openPdfFile(F.getAbsolutePath());
+            int count = pdf.getPageCount();
+            int[] widths = new int[count];
+            int[] heights = new int[count];
+            PdfPageData data = pdf.getPdfPageData();
+            for (int i=0;i<count;i++) {
+                widths[i] = data.getMediaBoxWidth(i+1); // PDF page index starts at 1
+                heights[i] = data.getMediaBoxHeight(i+1);
+            }
+            return new PDFMetadata(widths,heights,pdf.isEncrypted());
+        } finally {
+            pdf.closePdfFile();
+        }
+    }
+
+    @Override
+    protected Type getEntryMapType() {
+        return new TypeToken<HashMap<String,Entry<PDFMetadata>>>(){}.getType();
+    }
+
+    /**
+     * Get singleton instance.
+     * @return
+     */
+    public static PDFMetadataIndex getInstance() {
+        return instance;
+    }
+
+} // end class
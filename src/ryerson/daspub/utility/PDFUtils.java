@@ -19,17 +19,17 @@
 
 package ryerson.daspub.utility;
 
+import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import net.coobird.thumbnailator.Thumbnails;
-import net.coobird.thumbnailator.resizers.configurations.ScalingMode;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.jpedal.PdfDecoder;
 import org.jpedal.exception.PdfException;
 
@@ -39,11 +39,24 @@ import org.jpedal.exception.PdfException;
  */
 public class PDFUtils {
 
-    private static PdfDecoder pdf = new PdfDecoder(true);
     private static final Logger logger = Logger.getLogger(PDFUtils.class.getName());
 
     //--------------------------------------------------------------------------
 
+    /**
+     * Check out a decoder from the shared decoder pool.
+     * @return PDF decoder
+     * @throws IOException if interrupted while waiting for a decoder
+     */
+    private static PdfDecoder checkout() throws IOException {
+        try {
+            return PdfDecoderPool.getInstance().checkout();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a PDF decoder");
+        }
+    }
+
     /**
      * Get incremental file name
      * @param F File
@@ -79,18 +92,59 @@ public class PDFUtils {
      * @return
      */
     public static int getPageCount(File Input) {
-        int count = 0;
-        try {
-            pdf.openPdfFile(Input.getAbsolutePath());
-            count = pdf.getPageCount();
-            pdf.closePdfFile();
-        } catch (PdfException ex) {
-            String stack = ExceptionUtils.getStackTrace(ex);
-            logger.log(Level.SEVERE,
-                       "Could not get page count for \"{0}\"\n\n{1}",
-                       new Object[] {Input.getAbsolutePath(),stack});
+        PDFMetadata metadata = PDFMetadataIndex.getInstance().get(Input);
+        if (metadata != null) {
+            return metadata.getPageCount();
+        }
+        return 0;
+    }
+
+    /**
+     * Get the scaling at which a page must be rasterized so that the raster
+     * is large enough for the largest rendition.
+     * @param Input PDF input file
+     * @param Page Page number. Zero based page index.
+     * @param Renditions Output renditions
+     * @return Scaling factor
+     */
+    private static float getScaling(File Input, int Page, List<Rendition> Renditions) {
+        PDFMetadata metadata = PDFMetadataIndex.getInstance().get(Input);
+        if (metadata == null || Page >= metadata.getPageCount()) {
+            return 1.0f;
+        }
+        Dimension size = metadata.getPageSize(Page);
+        if (size.width <= 0 || size.height <= 0) {
+            return 1.0f;
+        }
+        float scaling = 0.0f;
+        Iterator<Rendition> it = Renditions.iterator();
+        while (it.hasNext()) {
+            Rendition r = it.next();
+            float s = Math.min((float) r.getWidth() / size.width,
+                               (float) r.getHeight() / size.height);
+            scaling = Math.max(scaling,s);
+        }
+        return scaling > 0.0f ? scaling : 1.0f;
+    }
+
+    /**
+     * Rasterize a document page once and write a JPG image for each
+     * rendition from that raster.
+     * @param Pdf Decoder holding the open document
+     * @param Input PDF input file
+     * @param Page Page number. Zero based page index.
+     * @param Renditions Output renditions
+     * @return Written files, in rendition order
+     */
+    private static List<File> writePage(PdfDecoder Pdf, File Input, int Page, List<Rendition> Renditions)
+            throws PdfException, IOException {
+        Pdf.setPageParameters(getScaling(Input,Page,Renditions),Page+1); // PDF page index starts at 1
+        BufferedImage img = Pdf.getPageAsImage(Page+1);
+        Iterator<Rendition> it = Renditions.iterator();
+        while (it.hasNext()) {
+            logger.log(Level.INFO,"Writing JPG image \"{0}\"",it.next().getOutput().getAbsolutePath());
         }
-        return count;
+        return ImageUtils.writeJPGImages(img,Renditions);
     }
 
     /**
@@ -105,39 +159,50 @@ public class PDFUtils {
      */
     public static List<File> writeJPGImage(File Input, File Output, int Width, int Height) 
             throws PdfException, IOException {
-        ArrayList<File> files = new ArrayList<File>();
-        if (FilenameUtils.isExtension(Input.getName(),"pdf")) {
-            // if output is a directory, change it
-            File output = Output;
-            if (output.isDirectory()) {
-                output = new File(output,Input.getName());
+        return writeJPGImages(Input,Collections.singletonList(new Rendition(Output,Width,Height)));
+    }
+
+    /**
+     * Write JPG images of a sequence of document pages. Renditions found in
+     * the rendition cache are restored from it. The document is opened only
+     * if a page needs to be rasterized, and then only once.
+     * @param Input PDF input file
+     * @param First Zero based index of the first page
+     * @param Pages Renditions for each page, starting at the first page
+     * @return Written files for each page
+     * @throws PdfException
+     * @throws IOException
+     */
+    private static List<List<File>> writePages(File Input, int First, List<List<Rendition>> Pages)
+            throws PdfException, IOException {
+        RenditionCache cache = RenditionCache.getInstance();
+        List<List<File>> files = new ArrayList<List<File>>();
+        PdfDecoder pdf = null;
+        try {
+            for (int i=0;i<Pages.size();i++) {
+                int page = First + i;
+                List<Rendition> renditions = Pages.get(i);
+                List<Rendition> missing = cache.restore(Input,page,renditions,ImageUtils.JPG_FORMAT,ImageUtils.JPG_QUALITY);
+                if (!missing.isEmpty()) {
+                    if (pdf == null) {
+                        pdf = checkout();
+                        pdf.openPdfFile(Input.getAbsolutePath());
+                    }
+                    writePage(pdf,Input,page,missing);
+                    cache.store(Input,page,missing,ImageUtils.JPG_FORMAT,ImageUtils.JPG_QUALITY);
+                }
+                List<File> written = new ArrayList<File>();
+                Iterator<Rendition> it = renditions.iterator();
+                while (it.hasNext()) {
+                    written.add(it.next().getOutput());
+                }
+                files.add(written);
             }
-            // if output extension is not jpg, change it
-            if (!FilenameUtils.isExtension(output.getName(),"jpg")) {
-                String basename = FilenameUtils.getBaseName(output.getName()) + ".jpg";
-                output = new File(output.getParentFile(),basename);
+        } finally {
+            if (pdf != null) {
+                PdfDecoderPool.getInstance().checkin(pdf);
             }
-            // @TODO configure JPedal to improve output settings
-            // exception will be thrown if invalid value passed
-//            Map mapValues = new HashMap();
-//            mapValues.put(JPedalSettings.IMAGE_HIRES,Boolean.TRUE);
-            
-            // write jpg image
-            pdf.openPdfFile(Input.getAbsolutePath());
-            BufferedImage img = pdf.getPageAsImage(1);
-            logger.log(Level.INFO,"Writing JPG image \"{0}\"",output.getAbsolutePath());
-            Thumbnails.of(img)
-                      .outputFormat("jpg")
-                      .outputQuality(1.0f)
-                      .scalingMode(ScalingMode.BICUBIC)
-                      .size(Width,Height)
-                      .toFile(output);
-            files.add(output);
-            pdf.closePdfFile();
-        } else {
-            logger.log(Level.WARNING,"Could not write PDF thumbnail for {0}. File is not a PDF document.",Input.getAbsolutePath());
         }
-        // return result
         return files;
     }
 
@@ -153,54 +218,95 @@ public class PDFUtils {
     public static void writeJPGImage(File Input, File Output, int Width, int Height, int Page) 
             throws PdfException, IOException {
         if (FilenameUtils.isExtension(Input.getName(),"pdf")) {
-            pdf.openPdfFile(Input.getAbsolutePath());
-            if (Page < pdf.getPageCount()) {
-                BufferedImage img = pdf.getPageAsImage(Page+1); // PDF page index starts at 1
-                logger.log(Level.INFO,"Writing JPG image \"{0}\"", Output.getAbsolutePath());
-                Thumbnails.of(img)
-                          .outputFormat("jpg")
-                          .outputQuality(1.0f)
-                          .scalingMode(ScalingMode.BICUBIC)
-                          .toFile(Output);
+            if (Page < getPageCount(Input)) {
+                List<List<Rendition>> pages = new ArrayList<List<Rendition>>();
+                pages.add(Collections.singletonList(new Rendition(Output,Width,Height)));
+                writePages(Input,Page,pages);
             } else {
                 logger.log(Level.WARNING,
                            "Could not write PDF thumbnail for \"{0}\". Requested page number does not exist.",
                            Input.getAbsolutePath());
             }
-            pdf.closePdfFile();
         } else {
             logger.log(Level.WARNING,"Could not write PDF thumbnail for {0}.",Input.getAbsolutePath());
         }
     }
 
     /**
-     * Write JPG image of each document page.
+     * Write JPG images of the first page of a PDF document, one for each
+     * rendition. The page is rasterized once at the resolution required by
+     * the largest rendition.
      * @param Input PDF input file
-     * @param Output Output folder or output file name.
-     * @param Width Maximum thumbnail width
-     * @param Height Maximum thumbnail height
+     * @param Renditions Output renditions. The output may be a file or folder.
+     * @return Written files, in rendition order
      * @throws PdfException
      * @throws IOException
      */
-    public static List<File> writeJPGImageAllPDFPages(File Input, File Output, int Width, int Height) 
+    public static List<File> writeJPGImages(File Input, List<Rendition> Renditions)
+            throws PdfException, IOException {
+        if (!FilenameUtils.isExtension(Input.getName(),"pdf")) {
+            logger.log(Level.WARNING,"Could not write PDF thumbnail for {0}. File is not a PDF document.",Input.getAbsolutePath());
+            return new ArrayList<File>();
+        }
+        ArrayList<Rendition> renditions = new ArrayList<Rendition>();
+        Iterator<Rendition> it = Renditions.iterator();
+        while (it.hasNext()) {
+            Rendition r = it.next();
+            // if output is a directory, change it
+            File output = r.getOutput();
+            if (output.isDirectory()) {
+                output = new File(output,Input.getName());
+            }
+            // if output extension is not jpg, change it
+            if (!FilenameUtils.isExtension(output.getName(),"jpg")) {
+                String basename = FilenameUtils.getBaseName(output.getName()) + ".jpg";
+                output = new File(output.getParentFile(),basename);
+            }
+            renditions.add(new Rendition(output,r.getWidth(),r.getHeight()));
+        }
+        List<List<Rendition>> pages = new ArrayList<List<Rendition>>();
+        pages.add(renditions);
+        return writePages(Input,0,pages).get(0);
+    }
+
+    /**
+     * Write JPG images of each document page, one for each rendition. Each
+     * page is rasterized once at the resolution required by the largest
+     * rendition.
+     * @param Input PDF input file
+     * @param Renditions Output renditions. The output is the base file name
+     * to which the page index is appended.
+     * @return Written files for each rendition, in rendition order
+     * @throws PdfException
+     * @throws IOException
+     */
+    public static List<List<File>> writeJPGImagesAllPDFPages(File Input, List<Rendition> Renditions)
             throws PdfException, IOException {
-        ArrayList<File> files = new ArrayList<File>();
+        List<List<File>> files = new ArrayList<List<File>>();
+        for (int i=0;i<Renditions.size();i++) {
+            files.add(new ArrayList<File>());
+        }
         if (FilenameUtils.isExtension(Input.getName(),"pdf")) {
-            pdf.openPdfFile(Input.getAbsolutePath());
-            int count = pdf.getPageCount();
+            int count = getPageCount(Input);
+            List<List<Rendition>> pages = new ArrayList<List<Rendition>>();
             for (int i=0;i<count;i++) {
-                BufferedImage img = pdf.getPageAsImage(i+1); // PDF page index starts at 1
-                File output = getIncrementedFileName(Output,i,"jpg");
-                logger.log(Level.INFO,"Writing JPG image \"{0}\"",output.getAbsolutePath());
-                Thumbnails.of(img)
-                          .outputFormat("jpg")
-                          .outputQuality(1.0f)
-                          .scalingMode(ScalingMode.BICUBIC)
-                          .size(Width,Height)
-                          .toFile(output);                
-                files.add(output);
+                ArrayList<Rendition> renditions = new ArrayList<Rendition>();
+                Iterator<Rendition> it = Renditions.iterator();
+                while (it.hasNext()) {
+                    Rendition r = it.next();
+                    File output = getIncrementedFileName(r.getOutput(),i,"jpg");
+                    renditions.add(new Rendition(output,r.getWidth(),r.getHeight()));
+                }
+                pages.add(renditions);
+            }
+            // regroup the written files by rendition
+            List<List<File>> written = writePages(Input,0,pages);
+            for (int i=0;i<written.size();i++) {
+                List<File> page = written.get(i);
+                for (int j=0;j<page.size();j++) {
+                    files.get(j).add(page.get(j));
+                }
             }
-            pdf.closePdfFile();
         } else {
             logger.log(Level.WARNING,"Could not write JPG images for PDF {0}.",Input.getAbsolutePath());
         }
@@ -208,4 +314,19 @@ public class PDFUtils {
         return files;
     }
 
+    /**
+     * Write JPG image of each document page.
+     * @param Input PDF input file
+     * @param Output Output folder or output file name.
+     * @param Width Maximum thumbnail width
+     * @param Height Maximum thumbnail height
+     * @throws PdfException
+     * @throws IOException
+     */
+    public static List<File> writeJPGImageAllPDFPages(File Input, File Output, int Width, int Height) 
+            throws PdfException, IOException {
+        List<Rendition> renditions = Collections.singletonList(new Rendition(Output,Width,Height));
+        return writeJPGImagesAllPDFPages(Input,renditions).get(0);
+    }
+
 } // end class
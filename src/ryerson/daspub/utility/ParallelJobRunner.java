@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2011 Davis Marques
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ */
+package ryerson.daspub.utility;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+/**
+ * Runs a set of independent jobs on a bounded pool of worker threads and
+ * collects the jobs that failed. A failed job does not affect the others.
+ * Jobs may submit further jobs to the same runner.
+ * @author dmarques
+ */
+public class ParallelJobRunner {
+
+    private ExecutorService executor;
+    private int pending = 0;
+    private List<Failure> failures = new ArrayList<Failure>();
+
+    private static final Logger logger = Logger.getLogger(ParallelJobRunner.class.getName());
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * ParallelJobRunner constructor
+     * @param Parallelism Maximum number of jobs that run at the same time
+     */
+    public ParallelJobRunner(int Parallelism) {
+        executor = Executors.newFixedThreadPool(Math.max(1,Parallelism));
+    }
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Wait until all submitted jobs have completed, then release the worker
+     * threads. The runner can not be used afterward.
+     * @return Failed jobs
+     * @throws InterruptedException
+     */
+    public List<Failure> awaitCompletion() throws InterruptedException {
+        try {
+            synchronized (this) {
+                while (pending > 0) {
+                    wait();
+                }
+                return Collections.unmodifiableList(new ArrayList<Failure>(failures));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Job completed.
+     * @param F Failure or null if the job succeeded.
+     */
+    private synchronized void complete(Failure F) {
+        if (F != null) {
+            failures.add(F);
+        }
+        pending--;
+        notifyAll();
+    }
+
+    /**
+     * Submit a job.
+     * @param Label Job label, used to identify the job if it fails
+     * @param Job Job
+     */
+    public void submit(final String Label, final Callable<?> Job) {
+        synchronized (this) {
+            pending++;
+        }
+        try {
+            execute(Label,Job);
+        } catch (RuntimeException ex) {
+            complete(new Failure(Label,ex));
+            throw ex;
+        }
+    }
+
+    /**
+     * Execute a job on a worker thread.
+     * @param Label Job label
+     * @param Job Job
+     */
+    private void execute(final String Label, final Callable<?> Job) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Failure failure = null;
+                try {
+                    Job.call();
+                } catch (Throwable t) {
+                    String stack = ExceptionUtils.getStackTrace(t);
+                    logger.log(Level.FINE,"Job {0} failed\n\n{1}",new Object[]{Label,stack});
+                    failure = new Failure(Label,t);
+                } finally {
+                    complete(failure);
+                }
+            }
+        });
+    }
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Failed job.
+     */
+    public static class Failure {
+
+        private String label;
+        private Throwable cause;
+
+        /**
+         * Failure constructor
+         * @param Label Job label
+         * @param Cause Exception thrown by the job
+         */
+        Failure(String Label, Throwable Cause) {
+            label = Label;
+            cause = Cause;
+        }
+
+        /**
+         * Get exception thrown by the job.
+         * @return
+         */
+        public Throwable getCause() {
+            return cause;
+        }
+
+        /**
+         * Get job label.
+         * @return
+         */
+        public String getLabel() {
+            return label;
+        }
+
+    } // end class
+
+} // end class
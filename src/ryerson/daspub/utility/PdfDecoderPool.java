@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2011 Davis Marques
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ */
+package ryerson.daspub.utility;
+
+import java.util.LinkedList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jpedal.PdfDecoder;
+import ryerson.daspub.Config;
+
+/**
+ * Bounded pool of PDF decoders. A PdfDecoder holds the state of the document
+ * it has open and can not be shared between threads, so each caller checks a
+ * decoder out for the duration of its work and returns it when done. Callers
+ * block when all decoders are in use.
+ * @author dmarques
+ */
+public class PdfDecoderPool {
+
+    private static PdfDecoderPool instance;
+
+    private final LinkedList<PdfDecoder> idle = new LinkedList<PdfDecoder>();
+    private final int size;
+    private int created = 0;
+
+    private static final Logger logger = Logger.getLogger(PdfDecoderPool.class.getName());
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * PdfDecoderPool constructor
+     * @param Size Maximum number of decoders
+     */
+    public PdfDecoderPool(int Size) {
+        size = Math.max(1,Size);
+    }
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Check out a decoder, waiting until one is available if the pool is
+     * exhausted. The decoder must be returned with checkin().
+     * @return PDF decoder
+     * @throws InterruptedException
+     */
+    public synchronized PdfDecoder checkout() throws InterruptedException {
+        while (idle.isEmpty() && created >= size) {
+            wait();
+        }
+        if (!idle.isEmpty()) {
+            return idle.removeFirst();
+        }
+        created++;
+        logger.log(Level.FINE,"Created PDF decoder {0} of {1}",new Object[]{created,size});
+        return new PdfDecoder(true);
+    }
+
+    /**
+     * Return a decoder to the pool. Any document left open is closed.
+     * @param Decoder PDF decoder
+     */
+    public synchronized void checkin(PdfDecoder Decoder) {
+        if (Decoder == null) {
+            return;
+        }
+        if (Decoder.isOpen()) {
+            Decoder.closePdfFile();
+        }
+        idle.addLast(Decoder);
+        notifyAll();
+    }
+
+    /**
+     * Get process wide decoder pool. The pool size is taken from the
+     * configuration on first use.
+     * @return
+     */
+    public static synchronized PdfDecoderPool getInstance() {
+        if (instance == null) {
+            instance = new PdfDecoderPool(Config.PDF_DECODER_POOL_SIZE);
+        }
+        return instance;
+    }
+
+} // end class
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2011 Davis Marques
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ */
+package ryerson.daspub.utility;
+
+import java.io.File;
+
+/**
+ * Describes one output image to be derived from a source image or document:
+ * the output file and the maximum output dimensions.
+ * @author dmarques
+ */
+public class Rendition {
+
+    private File output;
+    private int width;
+    private int height;
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Rendition constructor
+     * @param Output Output file
+     * @param Width Maximum width
+     * @param Height Maximum height
+     */
+    public Rendition(File Output, int Width, int Height) {
+        output = Output;
+        width = Width;
+        height = Height;
+    }
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Get maximum height.
+     * @return
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Get output file.
+     * @return
+     */
+    public File getOutput() {
+        return output;
+    }
+
+    /**
+     * Get maximum width.
+     * @return
+     */
+    public int getWidth() {
+        return width;
+    }
+
+} // end class
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2011 Davis Marques
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ */
+package ryerson.daspub.utility;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import ryerson.daspub.Config;
+
+/**
+ * Process wide cache of rendered images. Each rendition is stored under a key
+ * derived from the source file fingerprint and the rendition parameters, so a
+ * source file that has not changed since it was last rendered is copied from
+ * the cache instead of being decoded again. A changed source file produces a
+ * new key, which invalidates its old renditions.
+ * @author dmarques
+ */
+public class RenditionCache {
+
+    private static RenditionCache instance;
+
+    private File folder;
+
+    private static final Logger logger = Logger.getLogger(RenditionCache.class.getName());
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * RenditionCache constructor
+     * @param Folder Cache folder. If null, caching is disabled.
+     */
+    public RenditionCache(File Folder) {
+        folder = Folder;
+    }
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Delete all cached renditions.
+     * @throws IOException
+     */
+    public void clear() throws IOException {
+        if (isEnabled() && folder.exists()) {
+            FileUtils.cleanDirectory(folder);
+        }
+    }
+
+    /**
+     * Get the cache file for a key.
+     * @param Key Rendition key
+     * @param Format Image format extension
+     * @return
+     */
+    private File getCacheFile(String Key, String Format) {
+        File dir = new File(folder,Key.substring(0,2));
+        return new File(dir,Key + "." + Format);
+    }
+
+    /**
+     * Get process wide rendition cache. The cache folder is taken from the
+     * configuration on first use. An empty cache path disables the cache.
+     * @return
+     */
+    public static synchronized RenditionCache getInstance() {
+        if (instance == null) {
+            String path = Config.RENDITION_CACHE_PATH;
+            if (path == null || path.trim().equals("")) {
+                instance = new RenditionCache(null);
+            } else {
+                instance = new RenditionCache(new File(path));
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Get the cache key for a rendition of a source file.
+     * @param Source Source file
+     * @param Page Page number. Zero based page index.
+     * @param R Rendition
+     * @param Format Output image format
+     * @param Quality Output image quality
+     * @return Key
+     */
+    public String getKey(File Source, int Page, Rendition R, String Format, float Quality) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(Source.getAbsolutePath());
+        sb.append("|");
+        sb.append(Source.length());
+        sb.append("|");
+        sb.append(Source.lastModified());
+        sb.append("|");
+        sb.append(Page);
+        sb.append("|");
+        sb.append(R.getWidth());
+        sb.append("x");
+        sb.append(R.getHeight());
+        sb.append("|");
+        sb.append(Format);
+        sb.append("|");
+        sb.append(Quality);
+        return HashUtils.md5(sb.toString());
+    }
+
+    /**
+     * Determine if the cache is enabled.
+     * @return True if enabled, false otherwise.
+     */
+    public boolean isEnabled() {
+        return folder != null;
+    }
+
+    /**
+     * Restore a cached rendition to the output file. The rendition is
+     * deployed, so an output file that is already identical to the cached
+     * file is left as is, and the output is hard linked to the cached file
+     * when DEPLOY_HARD_LINKS is set.
+     * @param Key Rendition key
+     * @param Format Image format extension
+     * @param Output Output file
+     * @return True if the output file holds the cached rendition, false if
+     * the rendition is not in the cache.
+     */
+    public boolean restore(String Key, String Format, File Output) {
+        if (!isEnabled()) {
+            return false;
+        }
+        File cached = getCacheFile(Key,Format);
+        if (!cached.isFile()) {
+            return false;
+        }
+        try {
+            if (FileDeployer.getInstance().deploy(cached,Output)) {
+                logger.log(Level.FINE,"Restored cached rendition {0}",Output.getAbsolutePath());
+            }
+            return true;
+        } catch (IOException ex) {
+            String stack = ExceptionUtils.getStackTrace(ex);
+            logger.log(Level.WARNING,"Could not restore cached rendition {0}\n\n{1}",
+                       new Object[]{Output.getAbsolutePath(),stack});
+            return false;
+        }
+    }
+
+    /**
+     * Restore each cached rendition of a source file to its output file.
+     * @param Source Source file
+     * @param Page Page number. Zero based page index.
+     * @param Renditions Renditions
+     * @param Format Output image format
+     * @param Quality Output image quality
+     * @return Renditions that are not in the cache and must be rendered.
+     */
+    public List<Rendition> restore(File Source, int Page, List<Rendition> Renditions, String Format, float Quality) {
+        List<Rendition> missing = new ArrayList<Rendition>();
+        Iterator<Rendition> it = Renditions.iterator();
+        while (it.hasNext()) {
+            Rendition r = it.next();
+            if (!restore(getKey(Source,Page,r,Format,Quality),Format,r.getOutput())) {
+                missing.add(r);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Store a rendered output file in the cache.
+     * @param Key Rendition key
+     * @param Format Image format extension
+     * @param Output Rendered output file
+     */
+    public void store(String Key, String Format, File Output) {
+        if (!isEnabled() || !Output.isFile()) {
+            return;
+        }
+        File cached = getCacheFile(Key,Format);
+        File temp = new File(cached.getParentFile(),cached.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            FileUtils.copyFile(Output,temp,true);
+            if (!temp.renameTo(cached)) {
+                // another thread stored the same rendition
+                FileUtils.deleteQuietly(temp);
+            }
+        } catch (IOException ex) {
+            FileUtils.deleteQuietly(temp);
+            String stack = ExceptionUtils.getStackTrace(ex);
+            logger.log(Level.WARNING,"Could not cache rendition {0}\n\n{1}",
+                       new Object[]{Output.getAbsolutePath(),stack});
+        }
+    }
+
+    /**
+     * Store the rendered output file of each rendition in the cache.
+     * @param Source Source file
+     * @param Page Page number. Zero based page index.
+     * @param Renditions Rendered renditions
+     * @param Format Output image format
+     * @param Quality Output image quality
+     */
+    public void store(File Source, int Page, List<Rendition> Renditions, String Format, float Quality) {
+        Iterator<Rendition> it = Renditions.iterator();
+        while (it.hasNext()) {
+            Rendition r = it.next();
+            store(getKey(Source,Page,r,Format,Quality),Format,r.getOutput());
+        }
+    }
+
+} // end class
@@ -20,13 +20,14 @@ package ryerson.daspub.utility;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jxl.Cell;
@@ -36,20 +37,35 @@ import jxl.Workbook;
 import jxl.WorkbookSettings;
 import jxl.read.biff.BiffException;
 import org.apache.commons.lang3.exception.ExceptionUtils;
+import ryerson.daspub.Config;
 import ryerson.daspub.model.Submission;
 
 /**
  * Utilities for extracting submission data from an Excel spreadsheet file.
+ * Parsed submissions are kept in a process wide cache keyed by the spreadsheet
+ * path, size and last modified time, so that each version of a spreadsheet is
+ * parsed only once. Submissions can also be read one at a time through a
+ * Handler. If the spreadsheet is not already cached, the handler receives
+ * each submission as its row is read and the submissions are neither kept
+ * nor cached.
  * @author dmarques
  */
 public class SubmissionSpreadsheetAdapter {
 
     private static final int MAX_BLANK_CELLS_PER_ROW = 5;
     private static final int MIN_CELLS_PER_ROW = 14;
+    private static final int MAX_HEADER_ROW = 5;
 
     private File parentFolder;
     private File spreadsheet;
 
+    private static final Map<String,CacheEntry> cache = new LinkedHashMap<String,CacheEntry>(16,0.75f,true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String,CacheEntry> Eldest) {
+            return size() > Config.SPREADSHEET_CACHE_SIZE;
+        }
+    };
+
     private static final Logger logger = Logger.getLogger(SubmissionSpreadsheetAdapter.class.getName());
 
     //--------------------------------------------------------------------------
@@ -66,127 +82,52 @@ public class SubmissionSpreadsheetAdapter {
     //--------------------------------------------------------------------------
 
     /**
-     * Get the cell value. Compensates for empty cells and cells that contain
-     * errors.
-     * @param C Cell
-     * @return
+     * Remove all parsed spreadsheets from the cache.
      */
-    private static String getCellValue(Cell C) {
-        CellType type = C.getType();
-        if (type == CellType.EMPTY || type == CellType.ERROR
-                || type == CellType.FORMULA_ERROR) {
-            return "";
-        } else {
-            return C.getContents();
+    public static void clearCache() {
+        synchronized (cache) {
+            cache.clear();
         }
     }
 
     /**
-     * Get data rows.
-     * @return
+     * Get the cached submissions for this version of the spreadsheet, from
+     * memory or from the archive catalog.
+     * @param Fingerprint Spreadsheet fingerprint
+     * @return Submissions or null if the spreadsheet has not been cached.
      */
-    private List<Cell[]> getDataRows() {
-        ArrayList<Cell[]> datarows = new ArrayList<Cell[]>();
-        List<Cell[]> rows;
-        try {
-            rows = getRows();
-            // find the end of the header row
-            int dataStart = 0;
-            int dataEnd = rows.size();
-            int row = 0;
-            boolean found = false;
-            while(!found && row < rows.size() && row < 5) {
-                Cell[] cells = rows.get(row);
-                if (isHeaderRow(cells)) {
-                    dataStart = row + 1;
-                    found = true;
-                }
-                row++;
-            }
-            // return remainder as data rows
-            if (found) {
-                for (int i=dataStart;i<dataEnd;i++) {
-                    Cell[] cells = rows.get(i);
-                    datarows.add(cells);
-                }
+    private static List<Submission> getCachedSubmissions(FileFingerprint Fingerprint) {
+        synchronized (cache) {
+            CacheEntry entry = cache.get(Fingerprint.getPath());
+            if (entry != null && entry.fingerprint.equals(Fingerprint)) {
+                return entry.submissions;
             }
-        } catch (BiffException ex) {
-            logger.log(Level.SEVERE, null, ex);
-        } catch (FileNotFoundException ex) {
-            logger.log(Level.SEVERE, null, ex);
-        } catch (IOException ex) {
-            logger.log(Level.SEVERE, null, ex);
         }
-        return datarows;
-    }
-
-    /**
-     * Gets the header row.
-     * @return
-     */
-    private Cell[] getHeader() {
-        Cell[] header = new Cell[0];
-        try {
-            List<Cell[]> rows = getRows();
-            int row = 0;
-            boolean found = false;
-            while(!found && row < 5) {
-                Cell[] cells = rows.get(row);
-                if (isHeaderRow(cells)) {
-                    header = cells;
-                    found = true;
-                }
-                row++;
-            }
-        } catch (BiffException ex) {
-            logger.log(Level.SEVERE, null, ex);
-        } catch (FileNotFoundException ex) {
-            logger.log(Level.SEVERE, null, ex);
-        } catch (IOException ex) {
-            logger.log(Level.SEVERE, null, ex);
+        List<Submission> items = ArchiveCatalog.getInstance().getSubmissions(Fingerprint);
+        if (items == null) {
+            return null;
         }
-        return header;
-    }
-
-    /**
-     * Gets header to column number map.
-     * @return
-     */
-    private HashMap<String,Integer> getHeaderMap() {
-       HashMap<String,Integer> map = new HashMap<String,Integer>();
-       Cell[] header = getHeader();
-       for (int col=0;col<header.length;col++) {
-           Cell cell = header[col];
-           String key = getCellValue(cell);
-           map.put(key,col);
-       }
-       return map;
+        CacheEntry entry = new CacheEntry(Fingerprint,items);
+        synchronized (cache) {
+            cache.put(Fingerprint.getPath(),entry);
+        }
+        return entry.submissions;
     }
 
     /**
-     * Get spreadsheet rows.
+     * Get the cell value. Compensates for empty cells and cells that contain
+     * errors.
+     * @param C Cell
      * @return
-     * @throws BiffException
-     * @throws FileNotFoundException
-     * @throws IOException
      */
-    private List<Cell[]> getRows() throws BiffException, FileNotFoundException, IOException {
-        ArrayList<Cell[]> rows = new ArrayList<Cell[]>();
-        if (spreadsheet.exists()) {
-            WorkbookSettings ws = new WorkbookSettings();
-            ws.setLocale(new Locale("en", "EN"));
-            FileInputStream fis = new FileInputStream(spreadsheet);
-            Workbook workbook = Workbook.getWorkbook(fis, ws);
-            Sheet sheet = workbook.getSheet(0);
-            int endRow = sheet.getRows();
-            for (int row=0; row < endRow; row++) {
-                Cell[] cells = sheet.getRow(row);
-                if (!isBlankRow(cells)) {
-                    rows.add(cells);
-                }
-            }
+    private static String getCellValue(Cell C) {
+        CellType type = C.getType();
+        if (type == CellType.EMPTY || type == CellType.ERROR
+                || type == CellType.FORMULA_ERROR) {
+            return "";
+        } else {
+            return C.getContents();
         }
-        return rows;
     }
 
     /**
@@ -243,19 +184,27 @@ public class SubmissionSpreadsheetAdapter {
     }
 
     /**
-     * Gets list of submissions.
+     * Gets list of submissions. The spreadsheet is parsed only if it has
+     * changed since it was last parsed, in this or an earlier run.
      * @return List of submissions.
      */
     public List<Submission> getSubmissions() throws Exception {
-        ArrayList<Submission> items = new ArrayList<Submission>();
-        List<Cell[]> datarows = getDataRows();
-        Iterator<Cell[]> it = datarows.iterator();
-        while (it.hasNext()) {
-            Cell[] row = it.next();
-            Submission s = this.getSubmission(row);
-            if (s != null) {
-                items.add(s);
+        FileFingerprint fingerprint = FileAttributeIndex.getInstance().getFingerprint(spreadsheet);
+        List<Submission> cached = getCachedSubmissions(fingerprint);
+        if (cached != null) {
+            return new ArrayList<Submission>(cached);
+        }
+        final List<Submission> items = new ArrayList<Submission>();
+        parse(new Handler() {
+            @Override
+            public boolean handle(Submission S) {
+                items.add(S);
+                return true;
             }
+        });
+        ArchiveCatalog.getInstance().putSubmissions(fingerprint,items);
+        synchronized (cache) {
+            cache.put(fingerprint.getPath(),new CacheEntry(fingerprint,new ArrayList<Submission>(items)));
         }
         return items;
     }
@@ -277,6 +226,17 @@ public class SubmissionSpreadsheetAdapter {
         return false;
     }
 
+    /**
+     * Remove a spreadsheet from the cache.
+     * @param F Spreadsheet file
+     */
+    public static void invalidate(File F) {
+        synchronized (cache) {
+            cache.remove(F.getAbsolutePath());
+        }
+        ArchiveCatalog.getInstance().invalidate(F);
+    }
+
     /**
      * Determine if a cell row is blank.
      * @param Cells Row of cells
@@ -311,4 +271,123 @@ public class SubmissionSpreadsheetAdapter {
         return false;
     }
 
+    /**
+     * Read the spreadsheet and map its data rows to submissions, passing each
+     * submission to the handler as its row is read. Data rows are the rows
+     * following the header row, which must be one of the first few non-blank
+     * rows. Reading stops when the handler asks to stop. The workbook is
+     * closed before returning.
+     * @param H Submission handler
+     */
+    private void parse(Handler H) {
+        if (!FileAttributeIndex.getInstance().exists(spreadsheet)) {
+            return;
+        }
+        logger.log(Level.FINE,"Parsing submission spreadsheet \"{0}\"",spreadsheet.getAbsolutePath());
+        FileInputStream fis = null;
+        Workbook workbook = null;
+        try {
+            WorkbookSettings ws = new WorkbookSettings();
+            ws.setLocale(new Locale("en", "EN"));
+            fis = new FileInputStream(spreadsheet);
+            workbook = Workbook.getWorkbook(fis, ws);
+            Sheet sheet = workbook.getSheet(0);
+            int endRow = sheet.getRows();
+            int leading = 0;
+            boolean header = false;
+            for (int row=0;row<endRow;row++) {
+                Cell[] cells = sheet.getRow(row);
+                if (isBlankRow(cells)) {
+                    continue;
+                }
+                if (!header) {
+                    if (leading++ >= MAX_HEADER_ROW) {
+                        break;
+                    }
+                    header = isHeaderRow(cells);
+                    continue;
+                }
+                Submission s = getSubmission(cells);
+                if (s != null && !H.handle(s)) {
+                    break;
+                }
+            }
+        } catch (BiffException ex) {
+            logger.log(Level.SEVERE, null, ex);
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, null, ex);
+        } finally {
+            if (workbook != null) {
+                workbook.close();
+            }
+            if (fis != null) {
+                try {
+                    fis.close();
+                } catch (IOException ex) {
+                    logger.log(Level.WARNING, null, ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the submissions in the spreadsheet, passing each one to the
+     * handler in spreadsheet order. If the spreadsheet has not changed since
+     * it was last parsed, the cached submissions are passed to the handler.
+     * Otherwise each submission is passed to the handler as its row is read,
+     * and the submissions are neither kept nor cached. Reading stops when
+     * the handler asks to stop.
+     * @param H Submission handler
+     */
+    public void read(Handler H) {
+        FileFingerprint fingerprint = FileAttributeIndex.getInstance().getFingerprint(spreadsheet);
+        List<Submission> cached = getCachedSubmissions(fingerprint);
+        if (cached == null) {
+            parse(H);
+            return;
+        }
+        Iterator<Submission> it = cached.iterator();
+        while (it.hasNext()) {
+            if (!H.handle(it.next())) {
+                return;
+            }
+        }
+    }
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Receives submissions as they are read from a spreadsheet.
+     */
+    public interface Handler {
+
+        /**
+         * Handle a submission.
+         * @param S Submission
+         * @return True to continue reading, false to stop.
+         */
+        boolean handle(Submission S);
+
+    } // end interface
+
+    /**
+     * Parsed spreadsheet cache entry.
+     */
+    private static class CacheEntry {
+
+        private FileFingerprint fingerprint;
+        private List<Submission> submissions;
+
+        /**
+         * CacheEntry constructor
+         * @param Fingerprint Spreadsheet fingerprint
+         * @param Submissions Parsed submissions
+         */
+        CacheEntry(FileFingerprint Fingerprint, List<Submission> Submissions) {
+            fingerprint = Fingerprint;
+            submissions = Collections.unmodifiableList(Submissions);
+        }
+
+    } // end class
+
 } // end class
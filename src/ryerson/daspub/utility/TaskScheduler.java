@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2011 Davis Marques
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ */
+package ryerson.daspub.utility;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+/**
+ * Runs a graph of named tasks on an executor. Each task runs as soon as all
+ * of the tasks it depends on have completed. If a task fails, the tasks that
+ * depend on it are skipped. Dependencies must be added before the tasks that
+ * depend on them, which keeps the graph free of cycles.
+ * @author dmarques
+ */
+public class TaskScheduler {
+
+    private ExecutorService executor;
+    private LinkedHashMap<String,Node> nodes = new LinkedHashMap<String,Node>();
+    private boolean started = false;
+    private long startTime = 0;
+    private int remaining = 0;
+    private int completed = 0;
+    private int failed = 0;
+    private int skipped = 0;
+
+    private static final Logger logger = Logger.getLogger(TaskScheduler.class.getName());
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * TaskScheduler constructor
+     * @param Executor Executor on which tasks are run
+     */
+    public TaskScheduler(ExecutorService Executor) {
+        executor = Executor;
+    }
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Add a task.
+     * @param Name Task name
+     * @param Task Task
+     * @param Dependencies Names of the tasks that must complete first
+     * @throws IllegalArgumentException if the name is already in use or a
+     * dependency has not been added
+     * @throws IllegalStateException if the scheduler has been started
+     */
+    public synchronized void add(String Name, Runnable Task, String... Dependencies) {
+        if (started) {
+            throw new IllegalStateException("Tasks can not be added after the scheduler has started");
+        }
+        if (nodes.containsKey(Name)) {
+            throw new IllegalArgumentException("Task " + Name + " has already been added");
+        }
+        Node node = new Node(Name,Task);
+        for (int i=0;i<Dependencies.length;i++) {
+            Node dependency = nodes.get(Dependencies[i]);
+            if (dependency == null) {
+                throw new IllegalArgumentException("Task " + Name + " depends on unknown task " + Dependencies[i]);
+            }
+            dependency.dependents.add(node);
+            node.pending++;
+        }
+        nodes.put(Name,node);
+    }
+
+    /**
+     * Wait until all tasks have completed, failed or been skipped.
+     * @return True if all tasks completed successfully, false otherwise.
+     * @throws InterruptedException
+     */
+    public synchronized boolean awaitCompletion() throws InterruptedException {
+        while (started && remaining > 0) {
+            wait();
+        }
+        return failed == 0 && skipped == 0;
+    }
+
+    /**
+     * Task finished.
+     * @param N Task node
+     * @param Success True if the task completed, false if it failed.
+     */
+    private synchronized void finish(Node N, boolean Success) {
+        remaining--;
+        if (Success) {
+            completed++;
+            Iterator<Node> it = N.dependents.iterator();
+            while (it.hasNext()) {
+                Node dependent = it.next();
+                dependent.pending--;
+                if (dependent.pending == 0 && !dependent.skipped) {
+                    submit(dependent);
+                }
+            }
+        } else {
+            failed++;
+            skip(N.dependents,N.name);
+        }
+        if (remaining == 0) {
+            long elapsed = System.currentTimeMillis() - startTime;
+            logger.log(Level.INFO,"Completed {0} task(s), {1} failed, {2} skipped in {3} ms",
+                    new Object[]{completed,failed,skipped,elapsed});
+            notifyAll();
+        }
+    }
+
+    /**
+     * Determine if all tasks have finished.
+     * @return
+     */
+    public synchronized boolean isComplete() {
+        return started && remaining == 0;
+    }
+
+    /**
+     * Skip tasks, and the tasks that depend on them, because a task that
+     * they depend on failed.
+     * @param Nodes Task nodes
+     * @param Cause Name of the failed task
+     */
+    private void skip(List<Node> Nodes, String Cause) {
+        Iterator<Node> it = Nodes.iterator();
+        while (it.hasNext()) {
+            Node node = it.next();
+            if (!node.skipped) {
+                node.skipped = true;
+                remaining--;
+                skipped++;
+                logger.log(Level.WARNING,"Skipping task {0} because task {1} failed",
+                        new Object[]{node.name,Cause});
+                skip(node.dependents,Cause);
+            }
+        }
+    }
+
+    /**
+     * Start running tasks. Returns immediately.
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        startTime = System.currentTimeMillis();
+        remaining = nodes.size();
+        List<Node> ready = new ArrayList<Node>();
+        Iterator<Node> it = nodes.values().iterator();
+        while (it.hasNext()) {
+            Node node = it.next();
+            if (node.pending == 0) {
+                ready.add(node);
+            }
+        }
+        it = ready.iterator();
+        while (it.hasNext()) {
+            submit(it.next());
+        }
+        if (remaining == 0) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Submit a task to the executor.
+     * @param N Task node
+     */
+    private void submit(final Node N) {
+        logger.log(Level.FINE,"Scheduling task {0}",N.name);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean success = false;
+                try {
+                    N.task.run();
+                    success = true;
+                } catch (Throwable t) {
+                    String stack = ExceptionUtils.getStackTrace(t);
+                    logger.log(Level.SEVERE,"Task {0} failed\n\n{1}",new Object[]{N.name,stack});
+                } finally {
+                    finish(N,success);
+                }
+            }
+        });
+    }
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Task graph node.
+     */
+    private static class Node {
+
+        private String name;
+        private Runnable task;
+        private List<Node> dependents = new ArrayList<Node>();
+        private int pending = 0;
+        private boolean skipped = false;
+
+        /**
+         * Node constructor
+         * @param Name Task name
+         * @param Task Task
+         */
+        Node(String Name, Runnable Task) {
+            name = Name;
+            task = Task;
+        }
+
+    } // end class
+
+} // end class
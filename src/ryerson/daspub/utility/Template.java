@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2011 Davis Marques
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ */
+package ryerson.daspub.utility;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Page template with ${name} placeholders. The template text is parsed once
+ * into literal and placeholder segments. Rendering streams the segments to a
+ * writer in a single pass, so a parsed template can be reused for any number
+ * of pages. Placeholders without a value are written unchanged, and values
+ * are never scanned for placeholders.
+ * @author dmarques
+ */
+public class Template {
+
+    private static final String OPEN = "${";
+    private static final String CLOSE = "}";
+
+    private List<String> literals = new ArrayList<String>();
+    private List<String> names = new ArrayList<String>();
+    private int length;
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Template constructor
+     * @param Text Template text
+     */
+    public Template(String Text) {
+        length = Text.length();
+        int position = 0;
+        int start = Text.indexOf(OPEN);
+        while (start >= 0) {
+            int end = Text.indexOf(CLOSE,start + OPEN.length());
+            if (end < 0) {
+                break;
+            }
+            literals.add(Text.substring(position,start));
+            names.add(Text.substring(start + OPEN.length(),end));
+            position = end + CLOSE.length();
+            start = Text.indexOf(OPEN,position);
+        }
+        literals.add(Text.substring(position));
+    }
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Get the placeholder names, in the order they appear in the template.
+     * @return Placeholder names
+     */
+    public List<String> getNames() {
+        return new ArrayList<String>(names);
+    }
+
+    /**
+     * Render the template to a string.
+     * @param Values Placeholder values
+     * @return Rendered text
+     */
+    public String render(Map<String,String> Values) {
+        StringWriter writer = new StringWriter(length);
+        try {
+            render(Values,writer);
+        } catch (IOException ex) {
+            // a string writer does not throw
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Render the template to a writer. A null value is written as an empty
+     * string.
+     * @param Values Placeholder values
+     * @param W Writer
+     * @throws IOException
+     */
+    public void render(Map<String,String> Values, Writer W) throws IOException {
+        render(Values,Collections.<String,Section>emptyMap(),W);
+    }
+
+    /**
+     * Render the template to a writer. Sections write their own content 
+     * directly to the writer, so large content does not have to be held in
+     * memory. A null value is written as an empty string.
+     * @param Values Placeholder values
+     * @param Sections Placeholder sections
+     * @param W Writer
+     * @throws IOException
+     */
+    public void render(Map<String,String> Values, Map<String,Section> Sections, Writer W) throws IOException {
+        for (int i=0;i<names.size();i++) {
+            W.write(literals.get(i));
+            String name = names.get(i);
+            if (Sections.containsKey(name)) {
+                Sections.get(name).write(W);
+            } else if (Values.containsKey(name)) {
+                String value = Values.get(name);
+                if (value != null) {
+                    W.write(value);
+                }
+            } else {
+                W.write(OPEN);
+                W.write(name);
+                W.write(CLOSE);
+            }
+        }
+        W.write(literals.get(literals.size() - 1));
+    }
+
+    /**
+     * Render the template to a file, in the platform default encoding. The
+     * page is rendered to a temporary file, which then replaces the output
+     * file, so that a hard linked output file is not written through.
+     * @param Values Placeholder values
+     * @param F Output file
+     * @throws IOException
+     */
+    public void write(Map<String,String> Values, File F) throws IOException {
+        write(Values,Collections.<String,Section>emptyMap(),F);
+    }
+
+    /**
+     * Render the template to a file, in the platform default encoding.
+     * @param Values Placeholder values
+     * @param Sections Placeholder sections
+     * @param F Output file
+     * @throws IOException
+     */
+    public void write(Map<String,String> Values, Map<String,Section> Sections, File F) throws IOException {
+        File temp = FileDeployer.getTempFile(F);
+        try {
+            Writer writer = new BufferedWriter(new FileWriter(temp));
+            try {
+                render(Values,Sections,writer);
+            } finally {
+                writer.close();
+            }
+            FileDeployer.replace(temp,F);
+        } finally {
+            FileUtils.deleteQuietly(temp);
+        }
+    }
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Placeholder content that is written directly to the output.
+     */
+    public interface Section {
+
+        /**
+         * Write the section content.
+         * @param W Writer
+         * @throws IOException
+         */
+        void write(Writer W) throws IOException;
+
+    } // end interface
+
+} // end class
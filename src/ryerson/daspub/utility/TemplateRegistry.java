@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2011 Davis Marques
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ */
+package ryerson.daspub.utility;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import ryerson.daspub.Config;
+
+/**
+ * Process wide cache of parsed templates. Template files and class path
+ * resources are read and parsed once. When template reloading is enabled, a
+ * template file is read again if it has changed since it was cached.
+ * @author dmarques
+ */
+public class TemplateRegistry {
+
+    private HashMap<String,Template> resources = new HashMap<String,Template>();
+    private HashMap<String,Template> templates = new HashMap<String,Template>();
+    private HashMap<String,FileFingerprint> fingerprints = new HashMap<String,FileFingerprint>();
+
+    private static TemplateRegistry instance = new TemplateRegistry();
+
+    private static final Logger logger = Logger.getLogger(TemplateRegistry.class.getName());
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * TemplateRegistry constructor
+     */
+    private TemplateRegistry() {
+    }
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Remove all templates from the registry.
+     */
+    public synchronized void clear() {
+        resources.clear();
+        templates.clear();
+        fingerprints.clear();
+    }
+
+    /**
+     * Get the parsed template file.
+     * @param F Template file
+     * @return Template
+     * @throws IOException if the template file can not be read
+     */
+    public synchronized Template get(File F) throws IOException {
+        String path = F.getAbsolutePath();
+        Template template = templates.get(path);
+        if (template != null && Config.TEMPLATE_RELOAD && !fingerprints.get(path).matches(F)) {
+            logger.log(Level.INFO,"Reloading changed template \"{0}\"",path);
+            template = null;
+        }
+        if (template == null) {
+            FileFingerprint fingerprint = new FileFingerprint(F);
+            template = new Template(FileUtils.readFileToString(F));
+            templates.put(path,template);
+            fingerprints.put(path,fingerprint);
+            logger.log(Level.FINE,"Loaded template \"{0}\"",path);
+        }
+        return template;
+    }
+
+    /**
+     * Get singleton instance.
+     * @return
+     */
+    public static TemplateRegistry getInstance() {
+        return instance;
+    }
+
+    /**
+     * Get the parsed class path resource.
+     * @param C Class the resource name is relative to
+     * @param Name Resource name
+     * @return Template
+     * @throws IOException if the resource does not exist
+     */
+    public synchronized Template getResource(Class<?> C, String Name) throws IOException {
+        String key = C.getName() + "/" + Name;
+        Template template = resources.get(key);
+        if (template == null) {
+            InputStream is = C.getResourceAsStream(Name);
+            if (is == null) {
+                throw new IOException("Resource " + Name + " not found");
+            }
+            try {
+                template = new Template(IOUtils.toString(is));
+            } finally {
+                is.close();
+            }
+            resources.put(key,template);
+        }
+        return template;
+    }
+
+} // end class
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2011 Davis Marques
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ */
+package ryerson.daspub.utility;
+
+import java.awt.Dimension;
+
+/**
+ * Immutable description of a video file.
+ * @author dmarques
+ */
+public class VideoMetadata {
+
+    private int width;
+    private int height;
+    private long duration;
+    private String videoCodec;
+    private String audioCodec;
+    private int bitRate;
+    private int streamCount;
+    private long posterTime;
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * VideoMetadata constructor
+     * @param Width Video frame width
+     * @param Height Video frame height
+     * @param Duration Duration in milliseconds
+     * @param VideoCodec Video codec name
+     * @param AudioCodec Audio codec name or null if the file has no audio
+     * @param BitRate Container bit rate in bits per second
+     * @param StreamCount Number of streams in the container
+     * @param PosterTime Time of the poster frame in milliseconds
+     */
+    public VideoMetadata(int Width, int Height, long Duration,
+                         String VideoCodec, String AudioCodec,
+                         int BitRate, int StreamCount, long PosterTime) {
+        width = Width;
+        height = Height;
+        duration = Duration;
+        videoCodec = VideoCodec;
+        audioCodec = AudioCodec;
+        bitRate = BitRate;
+        streamCount = StreamCount;
+        posterTime = PosterTime;
+    }
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Get audio codec name.
+     * @return Codec name or null if the file has no audio stream
+     */
+    public String getAudioCodec() {
+        return audioCodec;
+    }
+
+    /**
+     * Get container bit rate.
+     * @return Bits per second
+     */
+    public int getBitRate() {
+        return bitRate;
+    }
+
+    /**
+     * Get duration.
+     * @return Duration in milliseconds
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Get time of the poster frame.
+     * @return Time in milliseconds
+     */
+    public long getPosterTime() {
+        return posterTime;
+    }
+
+    /**
+     * Get video frame dimensions.
+     * @return Frame dimensions
+     */
+    public Dimension getSize() {
+        return new Dimension(width,height);
+    }
+
+    /**
+     * Get number of streams in the container.
+     * @return Stream count
+     */
+    public int getStreamCount() {
+        return streamCount;
+    }
+
+    /**
+     * Get video codec name.
+     * @return Codec name
+     */
+    public String getVideoCodec() {
+        return videoCodec;
+    }
+
+} // end class
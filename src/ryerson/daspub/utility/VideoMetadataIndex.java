@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2011 Davis Marques
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ */
+package ryerson.daspub.utility;
+
+import com.google.gson.reflect.TypeToken;
+import java.io.File;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.io.FileUtils;
+import ryerson.daspub.Config;
+
+/**
+ * Process wide index of video metadata. Each video is opened once per
+ * version to read its stream properties and decode its poster frame. The
+ * poster is placed in the rendition cache, from where it is restored when
+ * pages are written.
+ * @author dmarques
+ */
+public class VideoMetadataIndex extends FileMetadataIndex<VideoMetadata> {
+
+    private static VideoMetadataIndex instance = new VideoMetadataIndex();
+
+    private static final Logger logger = Logger.getLogger(VideoMetadataIndex.class.getName());
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * VideoMetadataIndex constructor
+     */
+    private VideoMetadataIndex() {
+    }
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Read metadata and poster frame from a video file.
+     * @param F Video file
+     * @return Metadata
+     * @throws Exception
+     */
+    @Override
+    protected VideoMetadata compute(File F) throws Exception {
+        logger.log(Level.FINE,"Reading video metadata \"{0}\"",F.getAbsolutePath());
+        FrameGrabber grabber = new FrameGrabber(F);
+        RenditionCache cache = RenditionCache.getInstance();
+        if (!cache.isEnabled()) {
+            return grabber.probe(Config.VIDEO_POSTER_OFFSET,null);
+        }
+        File poster = File.createTempFile("poster",".png");
+        try {
+            VideoMetadata metadata = grabber.probe(Config.VIDEO_POSTER_OFFSET,poster);
+            cache.store(VideoUtils.getPosterKey(F),VideoUtils.POSTER_FORMAT,poster);
+            return metadata;
+        } finally {
+            FileUtils.deleteQuietly(poster);
+        }
+    }
+
+    @Override
+    protected Type getEntryMapType() {
+        return new TypeToken<HashMap<String,Entry<VideoMetadata>>>(){}.getType();
+    }
+
+    /**
+     * Write the poster frame of a video. The poster is captured when the
+     * video is probed for its metadata and is restored from the rendition
+     * cache.
+     * @param F Video file
+     * @param Output Poster image file
+     * @return True if the poster was written, false if it is not available.
+     */
+    public boolean getPoster(File F, File Output) {
+        if (get(F) == null) {
+            return false;
+        }
+        return RenditionCache.getInstance().restore(VideoUtils.getPosterKey(F),VideoUtils.POSTER_FORMAT,Output);
+    }
+
+    /**
+     * Get singleton instance.
+     * @return
+     */
+    public static VideoMetadataIndex getInstance() {
+        return instance;
+    }
+
+} // end class
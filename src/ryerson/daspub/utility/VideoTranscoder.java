@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2011 Davis Marques
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ */
+package ryerson.daspub.utility;
+
+import com.xuggle.mediatool.IMediaReader;
+import com.xuggle.mediatool.IMediaWriter;
+import com.xuggle.mediatool.MediaToolAdapter;
+import com.xuggle.mediatool.ToolFactory;
+import com.xuggle.mediatool.event.IAddStreamEvent;
+import com.xuggle.mediatool.event.IVideoPictureEvent;
+import com.xuggle.mediatool.event.VideoPictureEvent;
+import com.xuggle.xuggler.ICodec;
+import com.xuggle.xuggler.IStreamCoder;
+import com.xuggle.xuggler.IVideoPicture;
+import com.xuggle.xuggler.IVideoResampler;
+import java.awt.Dimension;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import ryerson.daspub.Config;
+
+/**
+ * Downsizes videos for the web. Videos larger than the configured maximum
+ * frame size or bit rate are re-encoded, other videos are deployed as is.
+ * Encodes run on a bounded queue with a fixed number of worker threads; when
+ * the queue is full, the submitting thread runs the encode itself. Encoded
+ * videos are kept in the rendition cache, keyed by source file fingerprint,
+ * so unchanged videos are encoded only once. Videos that are deployed as is
+ * are not cached.
+ * @author dmarques
+ */
+public class VideoTranscoder {
+
+    private ThreadPoolExecutor executor;
+
+    private static VideoTranscoder instance = null;
+
+    private static final Logger logger = Logger.getLogger(VideoTranscoder.class.getName());
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * VideoTranscoder constructor
+     * @param Threads Maximum number of encodes run at the same time
+     * @param QueueSize Maximum number of encodes waiting to be run
+     */
+    public VideoTranscoder(int Threads, int QueueSize) {
+        int threads = Math.max(1,Threads);
+        executor = new ThreadPoolExecutor(threads,threads,0L,TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(Math.max(1,QueueSize)),
+                new ThreadFactory() {
+                    public Thread newThread(Runnable R) {
+                        Thread t = new Thread(R,"video-transcoder");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Encode the video at the target frame size.
+     * @param Input Input video file
+     * @param Output Output video file
+     * @param Metadata Input video metadata
+     * @param Target Output frame size
+     * @throws IOException
+     */
+    private void encode(File Input, File Output, VideoMetadata Metadata, Dimension Target) throws IOException {
+        Dimension size = Metadata.getSize();
+        logger.log(Level.INFO,"Transcoding video \"{0}\" from {1}x{2} to {3}x{4}",
+                   new Object[]{Input.getAbsolutePath(),size.width,size.height,Target.width,Target.height});
+        // the writer picks the container format from the file extension
+        File temp = new File(Output.getParentFile(),"tmp-" + Thread.currentThread().getId() + "-" + Output.getName());
+        IMediaReader reader = ToolFactory.makeReader(Input.getAbsolutePath());
+        IMediaWriter writer = ToolFactory.makeWriter(temp.getAbsolutePath(),reader);
+        Resizer resizer = new Resizer(Input,Target,Metadata.getDuration());
+        reader.addListener(resizer);
+        resizer.addListener(writer);
+        writer.addListener(new EncoderSettings(Target));
+        try {
+            while (reader.readPacket() == null) {
+                // continue until the end of the input
+            }
+            writer.close();
+            Output.delete();
+            if (!temp.renameTo(Output)) {
+                throw new IOException("Could not write video " + Output.getAbsolutePath());
+            }
+        } finally {
+            reader.close();
+            FileUtils.deleteQuietly(temp);
+        }
+        logger.log(Level.INFO,"Transcoded video \"{0}\"",Output.getAbsolutePath());
+    }
+
+    /**
+     * Get process wide transcoder. The number of worker threads and the queue
+     * size are taken from the configuration on first use.
+     * @return
+     */
+    public static synchronized VideoTranscoder getInstance() {
+        if (instance == null) {
+            instance = new VideoTranscoder(Config.VIDEO_TRANSCODE_THREADS,Config.VIDEO_TRANSCODE_QUEUE_SIZE);
+        }
+        return instance;
+    }
+
+    /**
+     * Get the cache key for the encoded video.
+     * @param Input Input video file
+     * @return Key
+     */
+    private static String getKey(File Input) {
+        FileFingerprint f = new FileFingerprint(Input);
+        return HashUtils.md5(f.getPath(),f.getLength(),f.getLastModified(),
+                             Config.VIDEO_MAX_WIDTH,Config.VIDEO_MAX_HEIGHT,Config.VIDEO_MAX_BITRATE);
+    }
+
+    /**
+     * Get the frame size of the encoded video. The frame is scaled to fit the
+     * configured maximum dimensions and keeps its aspect ratio. Dimensions
+     * are rounded down to even values, as required by most encoders.
+     * @param Size Input frame size
+     * @return Output frame size
+     */
+    public static Dimension getOutputSize(Dimension Size) {
+        if (Size.width <= Config.VIDEO_MAX_WIDTH && Size.height <= Config.VIDEO_MAX_HEIGHT) {
+            return new Dimension(Size);
+        }
+        double scale = Math.min((double) Config.VIDEO_MAX_WIDTH / Size.width,
+                                (double) Config.VIDEO_MAX_HEIGHT / Size.height);
+        int w = Math.max(2,((int) (Size.width * scale)) & ~1);
+        int h = Math.max(2,((int) (Size.height * scale)) & ~1);
+        return new Dimension(w,h);
+    }
+
+    /**
+     * Queue a video to be transcoded.
+     * @param Input Input video file
+     * @param Output Output video file
+     * @return Output video file, when complete
+     */
+    public Future<File> submit(final File Input, final File Output) {
+        return executor.submit(new Callable<File>() {
+            public File call() throws Exception {
+                VideoMetadata metadata = VideoMetadataIndex.getInstance().get(Input);
+                if (metadata == null) {
+                    throw new IOException("Could not read video " + Input.getAbsolutePath());
+                }
+                // videos within the limits are deployed as they are
+                Dimension size = metadata.getSize();
+                Dimension target = getOutputSize(size);
+                if (target.equals(size) && metadata.getBitRate() <= Config.VIDEO_MAX_BITRATE) {
+                    FileDeployer.getInstance().deploy(Input,Output);
+                    return Output;
+                }
+                RenditionCache cache = RenditionCache.getInstance();
+                String format = getFormat(Output);
+                String key = getKey(Input);
+                if (!cache.restore(key,format,Output)) {
+                    encode(Input,Output,metadata,target);
+                    cache.store(key,format,Output);
+                }
+                return Output;
+            }
+        });
+    }
+
+    /**
+     * Transcode a video and wait for the result.
+     * @param Input Input video file
+     * @param Output Output video file
+     * @return Output video file
+     * @throws IOException
+     */
+    public File transcode(File Input, File Output) throws IOException {
+        try {
+            return submit(Input,Output).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while transcoding video " + Input.getAbsolutePath());
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Could not transcode video " + Input.getAbsolutePath() + ": " + cause);
+        }
+    }
+
+    /**
+     * Get the file name extension of a video, used as the cache format.
+     * @param F File
+     * @return Lower case extension
+     */
+    private static String getFormat(File F) {
+        return FilenameUtils.getExtension(F.getName()).toLowerCase();
+    }
+
+    //--------------------------------------------------------------------------
+
+    /**
+     * Sets the frame size and bit rate of the video stream added to the
+     * output container.
+     */
+    private static class EncoderSettings extends MediaToolAdapter {
+
+        private Dimension size;
+
+        /**
+         * EncoderSettings constructor
+         * @param Size Output frame size
+         */
+        EncoderSettings(Dimension Size) {
+            size = Size;
+        }
+
+        @Override
+        public void onAddStream(IAddStreamEvent Event) {
+            IStreamCoder coder = Event.getSource().getContainer().getStream(Event.getStreamIndex()).getStreamCoder();
+            if (coder.getCodecType() == ICodec.Type.CODEC_TYPE_VIDEO) {
+                coder.setWidth(size.width);
+                coder.setHeight(size.height);
+                coder.setBitRate(Config.VIDEO_MAX_BITRATE);
+            }
+            super.onAddStream(Event);
+        }
+
+    } // end class
+
+    /**
+     * Resamples each decoded picture to the output frame size and logs the
+     * encoding progress.
+     */
+    private static class Resizer extends MediaToolAdapter {
+
+        private File input;
+        private Dimension size;
+        private long duration;
+        private int progress = 0;
+        private IVideoResampler resampler = null;
+
+        /**
+         * Resizer constructor
+         * @param Input Input video file
+         * @param Size Output frame size
+         * @param Duration Input duration in milliseconds
+         */
+        Resizer(File Input, Dimension Size, long Duration) {
+            input = Input;
+            size = Size;
+            duration = Duration;
+        }
+
+        @Override
+        public void onVideoPicture(IVideoPictureEvent Event) {
+            IVideoPicture in = Event.getPicture();
+            if (resampler == null) {
+                resampler = IVideoResampler.make(size.width,size.height,in.getPixelType(),
+                                                 in.getWidth(),in.getHeight(),in.getPixelType());
+                if (resampler == null) {
+                    throw new RuntimeException("Could not resize video " + input.getAbsolutePath());
+                }
+            }
+            IVideoPicture out = IVideoPicture.make(in.getPixelType(),size.width,size.height);
+            if (resampler.resample(out,in) < 0) {
+                throw new RuntimeException("Could not resize video " + input.getAbsolutePath());
+            }
+            // log progress in steps of 10 percent
+            if (duration > 0) {
+                int percent = (int) Math.min(100,(Event.getTimeStamp() / 1000) * 100 / duration);
+                if (percent >= progress + 10) {
+                    progress = percent - percent % 10;
+                    logger.log(Level.INFO,"Transcoding video \"{0}\" {1}% complete",
+                               new Object[]{input.getName(),progress});
+                }
+            }
+            super.onVideoPicture(new VideoPictureEvent(Event.getSource(),out,Event.getStreamIndex()));
+        }
+
+    } // end class
+
+} // end class
@@ -18,10 +18,6 @@
  */
 package ryerson.daspub.utility;
 
-import com.xuggle.xuggler.ICodec;
-import com.xuggle.xuggler.IContainer;
-import com.xuggle.xuggler.IStream;
-import com.xuggle.xuggler.IStreamCoder;
 import java.awt.Dimension;
 import java.io.File;
 import java.io.IOException;
@@ -37,6 +33,7 @@ import ryerson.daspub.Config;
 public class VideoUtils {
 
     private static final String IMAGE_EXT = ".png";
+    static final String POSTER_FORMAT = "png";
 
     private static final String MIME_MP4 = "video/mp4";
     private static final String MIME_OGG = "video/ogg";
@@ -104,6 +101,18 @@ public class VideoUtils {
         return mimetype;
     }
 
+    /**
+     * Get the rendition cache key of the poster image of a video. The key is
+     * derived from the video fingerprint and the poster time offset.
+     * @param Input Input video file
+     * @return Key
+     */
+    public static String getPosterKey(File Input) {
+        FileFingerprint f = new FileFingerprint(Input);
+        return HashUtils.md5("poster",f.getPath(),f.getLength(),f.getLastModified(),
+                             Config.VIDEO_POSTER_OFFSET);
+    }
+
     /**
      * Get video stream screen dimensions.
      * @param Input Input video file
@@ -111,30 +120,16 @@ public class VideoUtils {
      * @throws IllegalArgumentException
      */
     public static Dimension getSize(File Input) throws IllegalArgumentException {
-        // Create a Xuggler container object
-        IContainer container = IContainer.make();
-        // Open up the container
-        if (container.open(Input.getAbsolutePath(), IContainer.Type.READ, null) < 0)
-          throw new IllegalArgumentException("Could not open file: " + Input.getAbsolutePath());
-        // get streams
-        int numStreams = container.getNumStreams();
-        // iterate through the streams to find video dimensions
-        Dimension dim = new Dimension();
-        for(int i = 0; i < numStreams; i++) {
-            // find the stream object
-            IStream stream = container.getStream(i);
-            // get the pre-configured decoder that can decode this stream;
-            IStreamCoder coder = stream.getStreamCoder();
-            if (coder.getCodecType() == ICodec.Type.CODEC_TYPE_VIDEO) {
-                dim.setSize(coder.getWidth(),coder.getHeight());
-            }
+        VideoMetadata metadata = VideoMetadataIndex.getInstance().get(Input);
+        if (metadata == null) {
+            throw new IllegalArgumentException("Could not open file: " + Input.getAbsolutePath());
         }
-        // return result
-        return dim;
+        return metadata.getSize();
     }
 
     /**
-     * Write first video frame as a PNG image file.
+     * Write a video frame near the configured poster offset as a PNG image
+     * file.
      * @param Input
      * @param Output
      * @throws IOException
@@ -149,8 +144,13 @@ public class VideoUtils {
         } else {
             output.getParentFile().mkdirs();
         }
-        // write video frame
-        FrameGrabber d = new FrameGrabber(Input,output);
+        // restore the poster captured when the video was probed or write
+        // the video frame
+        if (!VideoMetadataIndex.getInstance().getPoster(Input,output)) {
+            FrameGrabber grabber = new FrameGrabber(Input);
+            grabber.write(output,Config.VIDEO_POSTER_OFFSET);
+            RenditionCache.getInstance().store(getPosterKey(Input),POSTER_FORMAT,output);
+        }
         // return the written file
         return output;
     }
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2011 Davis Marques
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ */
+package ryerson.daspub.test.utility;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import ryerson.daspub.utility.Template;
+import static org.junit.Assert.*;
+
+/**
+ * Template parsing and rendering.
+ * @author dmarques
+ */
+public class TemplateTest {
+
+    private Map<String,String> values;
+
+    @Before
+    public void setUp() {
+        values = new HashMap<String,String>();
+    }
+
+    @Test
+    public void rendersValues() {
+        values.put("name","Studio");
+        values.put("year","2011");
+        Template t = new Template("<h1>${name}</h1><p>${year}</p>");
+        assertEquals("<h1>Studio</h1><p>2011</p>",t.render(values));
+    }
+
+    @Test
+    public void rendersTextWithoutPlaceholders() {
+        assertEquals("",new Template("").render(values));
+        assertEquals("plain text",new Template("plain text").render(values));
+    }
+
+    @Test
+    public void writesUnknownPlaceholdersUnchanged() {
+        values.put("known","x");
+        Template t = new Template("${known} ${unknown}");
+        assertEquals("x ${unknown}",t.render(values));
+    }
+
+    @Test
+    public void writesNullValuesAsEmptyStrings() {
+        values.put("name",null);
+        Template t = new Template("[${name}]");
+        assertEquals("[]",t.render(values));
+    }
+
+    @Test
+    public void doesNotScanValuesForPlaceholders() {
+        values.put("a","${b}");
+        values.put("b","replaced");
+        Template t = new Template("${a}");
+        assertEquals("${b}",t.render(values));
+    }
+
+    @Test
+    public void keepsUnterminatedPlaceholderAsText() {
+        values.put("x","1");
+        Template t = new Template("a ${x} b ${y");
+        assertEquals("a 1 b ${y",t.render(values));
+        assertEquals(Arrays.asList("x"),t.getNames());
+    }
+
+    @Test
+    public void keepsUnterminatedPlaceholderWithoutValues() {
+        Template t = new Template("${");
+        assertEquals("${",t.render(values));
+        assertTrue(t.getNames().isEmpty());
+    }
+
+    @Test
+    public void listsPlaceholderNamesInOrder() {
+        Template t = new Template("${b}${a}${b}");
+        assertEquals(Arrays.asList("b","a","b"),t.getNames());
+    }
+
+    @Test
+    public void writesSectionsInPlace() throws IOException {
+        values.put("content","value");
+        Map<String,Template.Section> sections = new HashMap<String,Template.Section>();
+        sections.put("content",new Template.Section() {
+            @Override
+            public void write(Writer W) throws IOException {
+                W.write("section");
+            }
+        });
+        StringWriter writer = new StringWriter();
+        new Template("<${content}>").render(values,sections,writer);
+        assertEquals("<section>",writer.toString());
+    }
+
+} // end class